@@ -0,0 +1,152 @@
+package com.example.aiapp.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the hot-path benchmarks with the GC profiler, so every result carries
+ * both throughput and allocation ({@code gc.alloc.rate} in MB/s and
+ * {@code gc.alloc.rate.norm} in bytes per operation).
+ *
+ * Usage: {@code BenchmarkMain <result.json> [jmh options...]}
+ *
+ * Allocation per operation is compared with {@code alloc-baseline.properties};
+ * unlike throughput it hardly depends on the machine, so it makes a stable
+ * regression gate. The process exits with status 1 if any benchmark allocates
+ * more than {@value #ALLOWED_GROWTH} times its baseline (plus a small slack).
+ * A fresh baseline for the current code is written next to the result file.
+ */
+public final class BenchmarkMain {
+
+    static final double ALLOWED_GROWTH = 1.10;
+
+    private static final double SLACK_BYTES = 16;
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private static final String ALLOC_RATE = "gc.alloc.rate";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: BenchmarkMain <result.json> [jmh options...]");
+            System.exit(2);
+        }
+
+        Path resultFile = Path.of(args[0]);
+        Files.createDirectories(resultFile.toAbsolutePath().getParent());
+
+        CommandLineOptions cli = new CommandLineOptions(Arrays.copyOfRange(args, 1, args.length));
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cli);
+        if (cli.getIncludes().isEmpty()) {
+            builder.include("com\\.example\\.aiapp\\..*Benchmark\\..*");
+        }
+        Options options = builder
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.toString())
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        Properties baseline = loadBaseline();
+        TreeMap<String, Double> measured = new TreeMap<>();
+        int regressions = 0;
+
+        System.out.println();
+        System.out.printf("%-70s %14s %12s %12s %12s%n", "benchmark", "ops/ms", "alloc MB/s", "B/op", "baseline");
+        for (RunResult result : results) {
+            String key = key(result.getParams());
+            double throughput = result.getPrimaryResult().getScore();
+            double allocRate = score(result, ALLOC_RATE);
+            double allocNorm = score(result, ALLOC_NORM);
+            measured.put(key, allocNorm);
+
+            String expected = baseline.getProperty(key);
+            String verdict = expected == null ? "-" : expected;
+            if (expected != null && allocNorm > Double.parseDouble(expected) * ALLOWED_GROWTH + SLACK_BYTES) {
+                verdict = expected + " REGRESSED";
+                regressions++;
+            }
+            System.out.printf("%-70s %14.1f %12.1f %12.1f %12s%n", key, throughput, allocRate, allocNorm, verdict);
+        }
+
+        Path freshBaseline = resultFile.resolveSibling("alloc-baseline.properties");
+        writeBaseline(freshBaseline, measured);
+        System.out.println();
+        System.out.println("Results: " + resultFile);
+        System.out.println("Baseline for the current code: " + freshBaseline);
+
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmark(s) allocate more than the baseline allows");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Short benchmark name plus its sorted parameters, e.g.
+     * {@code PromptBenchmark.buildPrompt[action-SUMMARIZE,inputChars-200]}.
+     */
+    static String key(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        int classStart = benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1;
+
+        StringBuilder key = new StringBuilder(benchmark.substring(classStart));
+        if (!params.getParamsKeys().isEmpty()) {
+            key.append('[');
+            String separator = "";
+            for (String name : new TreeSet<>(params.getParamsKeys())) {
+                key.append(separator).append(name).append('-').append(params.getParam(name));
+                separator = ",";
+            }
+            key.append(']');
+        }
+        return key.toString();
+    }
+
+    private static double score(RunResult result, String secondary) {
+        Result<?> r = result.getSecondaryResults().get(secondary);
+        return r == null ? Double.NaN : r.getScore();
+    }
+
+    private static Properties loadBaseline() throws IOException {
+        Properties baseline = new Properties();
+        try (InputStream in = BenchmarkMain.class.getResourceAsStream("/alloc-baseline.properties")) {
+            if (in != null) {
+                baseline.load(in);
+            }
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Path file, TreeMap<String, Double> measured) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file)) {
+            out.write("# bytes allocated per operation (gc.alloc.rate.norm)\n");
+            for (var entry : measured.entrySet()) {
+                out.write(entry.getKey().replace("=", "\\=").replace(":", "\\:")
+                        + "=" + Math.round(entry.getValue()) + "\n");
+            }
+        }
+    }
+}
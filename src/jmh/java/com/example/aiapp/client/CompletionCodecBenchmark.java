@@ -0,0 +1,77 @@
+package com.example.aiapp.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Upstream request serialization and response decoding, as done by the
+ * message converters behind {@link GroqClient#complete} and per chunk in
+ * {@link GroqClient#stream}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionCodecBenchmark {
+
+    @Param({"200", "8000"})
+    int contentChars;
+
+    JsonMapper jsonMapper;
+
+    ChatCompletionRequest request;
+
+    byte[] responseBody;
+
+    String streamChunk;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = JsonMapper.builder().build();
+
+        String content = "lorem ipsum ".repeat(contentChars / 12 + 1).substring(0, contentChars);
+        request = ChatCompletionRequest.of("llama-3.1-8b-instant", "Summarize this text:\n" + content);
+
+        responseBody = ("{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1700000000,"
+                + "\"model\":\"llama-3.1-8b-instant\",\"choices\":[{\"index\":0,\"message\":"
+                + "{\"role\":\"assistant\",\"content\":\"" + content + "\"},\"logprobs\":null,"
+                + "\"finish_reason\":\"stop\"}],\"usage\":{\"queue_time\":0.01,\"prompt_tokens\":120,"
+                + "\"prompt_time\":0.002,\"completion_tokens\":340,\"completion_time\":0.3,"
+                + "\"total_tokens\":460,\"total_time\":0.302},\"system_fingerprint\":\"fp_1\","
+                + "\"x_groq\":{\"id\":\"req_1\"}}").getBytes();
+
+        streamChunk = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1700000000,"
+                + "\"model\":\"llama-3.1-8b-instant\",\"choices\":[{\"index\":0,\"delta\":"
+                + "{\"content\":\" ipsum\"},\"logprobs\":null,\"finish_reason\":null}]}";
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() {
+        return jsonMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public String decodeResponse() {
+        return jsonMapper.readValue(responseBody, ChatCompletionResponse.class).content();
+    }
+
+    @Benchmark
+    public String decodeStreamChunk() {
+        return jsonMapper.readValue(streamChunk, ChatCompletionResponse.class).deltaContent();
+    }
+}
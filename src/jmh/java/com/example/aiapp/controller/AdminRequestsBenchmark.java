@@ -0,0 +1,126 @@
+package com.example.aiapp.controller;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.aiapp.dto.AdminRequestRowDto;
+import com.example.aiapp.dto.CursorPageDto;
+import com.example.aiapp.dto.UserEmailView;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.repository.UserRepository;
+import com.example.aiapp.service.UserEmailLookup;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * The row mapping of {@link AdminController#getRequestsPage}: one
+ * {@link UserEmailLookup} call for the page's users (from its cache, or
+ * through the repository, here an in-memory stand-in) and one DTO per row,
+ * on its own and together with the JSON rendering that follows it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdminRequestsBenchmark {
+
+    private static final int USERS = 10;
+
+    @Param({"5", "50"})
+    int pageSize;
+
+    @Param({"true", "false"})
+    boolean cachedEmails;
+
+    JsonMapper jsonMapper;
+
+    UserEmailLookup userEmailLookup;
+
+    List<AiRequest> rows;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = JsonMapper.builder().build();
+        userEmailLookup = new UserEmailLookup(userRepository(), 1000, 3600);
+
+        // one probe row past the page, as the keyset query returns
+        rows = new ArrayList<>(pageSize + 1);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i <= pageSize; i++) {
+            AiRequest r = new AiRequest();
+            r.setId((long) 10_000 - i);
+            r.setUserId((long) i % USERS + 1);
+            r.setAction("REWRITE");
+            r.setInputText("Please rewrite this paragraph so that it reads more clearly. ".repeat(3) + i);
+            r.setOutput("Here is a clearer version of the paragraph you sent. ".repeat(6) + i);
+            r.setCreatedAt(now.minusMinutes(i));
+            rows.add(r);
+        }
+    }
+
+    @Benchmark
+    public CursorPageDto<AdminRequestRowDto> mapPage() {
+        evictUnlessCached();
+        return AdminController.requestRowsPage(rows, pageSize, userEmailLookup);
+    }
+
+    @Benchmark
+    public byte[] mapAndRenderPage() {
+        evictUnlessCached();
+        return jsonMapper.writeValueAsBytes(AdminController.requestRowsPage(rows, pageSize, userEmailLookup));
+    }
+
+    private void evictUnlessCached() {
+        if (!cachedEmails) {
+            for (long id = 1; id <= USERS; id++) {
+                userEmailLookup.evict(id);
+            }
+        }
+    }
+
+    // answers findEmailsByIdIn only, as the lookup needs nothing else
+    private static UserRepository userRepository() {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[] { UserRepository.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("findEmailsByIdIn")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<UserEmailView> users = new ArrayList<>();
+                    for (Object id : (Collection<?>) args[0]) {
+                        users.add(new EmailView((Long) id, "user" + id + "@example.com"));
+                    }
+                    return users;
+                });
+    }
+
+    private record EmailView(Long id, String email) implements UserEmailView {
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getEmail() {
+            return email;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.aiapp.entity;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.aiapp.dto.AiHistorySummaryDto;
+
+/**
+ * CPU cost of {@link CompressedTextConverter} against the space it saves.
+ *
+ * Throughput gives the cost per value; the {@code inputChars} and
+ * {@code storedChars} counters (reported as rates) give the size ratio:
+ * {@code storedChars / inputChars} is the fraction of the column that is
+ * left. The text is random sentences over a small vocabulary, which
+ * compresses worse than real completions (no repeated phrases); treat the
+ * ratio as pessimistic and check it with the migration stats on real rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextCompressionBenchmark {
+
+    private static final String[] WORDS = ("the a of to and in is that for it as with on be this are by or from"
+            + " request response server client cache latency thread pool connection database query index token"
+            + " model prompt output input user history batch stream retry timeout error service system data"
+            + " value result time memory performance load queue limit rate call upstream network message event"
+            + " should can will may must would could uses returns keeps reduces improves handles avoids allows"
+            + " each every some many most fewer more less first next last new old fast slow large small simple"
+            + " because when while after before since until if although so then also however therefore").split(" ");
+
+    @Param({"512", "4096", "32768"})
+    int chars;
+
+    @Param({"1", "6"})
+    int level;
+
+    CompressedTextConverter converter;
+
+    String text;
+
+    String stored;
+
+    String storedPreviewPrefix;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Sizes {
+        public long inputChars;
+        public long storedChars;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            inputChars = 0;
+            storedChars = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        converter = new CompressedTextConverter(true, 0, level);
+        text = prose(chars, new Random(42));
+        stored = converter.encode(text);
+        storedPreviewPrefix = stored.substring(0,
+                Math.min(stored.length(), AiHistorySummaryDto.COMPRESSED_PREVIEW_SOURCE_LENGTH));
+    }
+
+    @Benchmark
+    public String encode(Sizes sizes) {
+        String encoded = converter.encode(text);
+        sizes.inputChars += text.length();
+        sizes.storedChars += encoded.length();
+        return encoded;
+    }
+
+    @Benchmark
+    public String decode() {
+        return CompressedTextConverter.decode(stored);
+    }
+
+    @Benchmark
+    public String preview() {
+        return CompressedTextConverter.preview(storedPreviewPrefix, AiHistorySummaryDto.PREVIEW_LENGTH);
+    }
+
+    static String prose(int length, Random random) {
+        StringBuilder text = new StringBuilder(length + 64);
+        while (text.length() < length) {
+            int words = 8 + random.nextInt(15);
+            for (int i = 0; i < words; i++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                text.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                text.append(i == words - 1 ? ". " : " ");
+            }
+            if (random.nextInt(5) == 0) {
+                text.append("\n\n");
+            }
+        }
+        return text.substring(0, length);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.aiapp.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.aiapp.service.AiRateLimiter.Limit;
+
+/**
+ * {@link AiRateLimiter#acquire} for admitted calls from several threads, two
+ * users and one shared global bucket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class AiRateLimiterBenchmark {
+
+    AiRateLimiter limiter;
+
+    @State(Scope.Thread)
+    public static class Caller {
+
+        private static final AtomicLong NEXT = new AtomicLong();
+
+        long userId;
+
+        @Setup
+        public void setUp() {
+            userId = NEXT.getAndIncrement() % 2;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Limit unlimited = new Limit(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        limiter = new AiRateLimiter(true, unlimited, unlimited, unlimited, System::nanoTime);
+    }
+
+    @Benchmark
+    public void acquire(Caller caller) {
+        limiter.acquire(caller.userId, "USER", 1);
+    }
+}
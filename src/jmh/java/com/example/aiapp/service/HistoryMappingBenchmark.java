@@ -0,0 +1,67 @@
+package com.example.aiapp.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import com.example.aiapp.dto.AiHistoryDto;
+import com.example.aiapp.entity.AiRequest;
+
+/**
+ * The {@link AiRequest} to {@link AiHistoryDto} mapping done by
+ * {@link GeminiService#getHistory} on each page of rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryMappingBenchmark {
+
+    @Param({"5", "50"})
+    int pageSize;
+
+    Page<AiRequest> page;
+
+    @Setup
+    public void setUp() {
+        List<AiRequest> rows = new ArrayList<>(pageSize);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < pageSize; i++) {
+            AiRequest r = new AiRequest();
+            r.setId((long) i + 1);
+            r.setUserId(1L);
+            r.setAction("SUMMARIZE");
+            r.setInputText("input text " + i);
+            r.setOutput("output text " + i);
+            r.setCreatedAt(now.minusMinutes(i));
+            r.setPromptTokens(120);
+            r.setCompletionTokens(340);
+            r.setLatencyMs(900);
+            rows.add(r);
+        }
+        page = new PageImpl<>(rows, PageRequest.of(0, pageSize), 1000);
+    }
+
+    @Benchmark
+    public Page<AiHistoryDto> mapPage() {
+        return page.map(GeminiService::toHistoryDto);
+    }
+}
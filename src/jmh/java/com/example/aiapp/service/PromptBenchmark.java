@@ -0,0 +1,45 @@
+package com.example.aiapp.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link GeminiService#buildPrompt} for typical and long user inputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptBenchmark {
+
+    @Param({"200", "8000"})
+    int inputChars;
+
+    @Param({"SUMMARIZE", "explain"})
+    String action;
+
+    String text;
+
+    @Setup
+    public void setUp() {
+        text = "lorem ipsum ".repeat(inputChars / 12 + 1).substring(0, inputChars);
+    }
+
+    @Benchmark
+    public String buildPrompt() {
+        return GeminiService.buildPrompt(text, action);
+    }
+}
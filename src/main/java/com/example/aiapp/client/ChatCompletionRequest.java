@@ -0,0 +1,20 @@
+package com.example.aiapp.client;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Request body for an OpenAI-compatible {@code /chat/completions} call.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChatCompletionRequest(String model, List<ChatMessage> messages, Boolean stream) {
+
+    public static ChatCompletionRequest of(String model, String prompt) {
+        return new ChatCompletionRequest(model, List.of(ChatMessage.user(prompt)), null);
+    }
+
+    public ChatCompletionRequest streaming() {
+        return new ChatCompletionRequest(model, messages, true);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.aiapp.client;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Response body of a {@code /chat/completions} call. Streaming chunks share
+ * this shape, with the text in {@code delta} rather than {@code message}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChatCompletionResponse(
+        List<Choice> choices,
+        Usage usage,
+        @JsonProperty("x_groq") GroqExtension groq) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Choice(ChatMessage message, ChatMessage delta) {
+    }
+
+    /**
+     * Token counts and server-side timing (in seconds) reported by the
+     * upstream.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Usage(
+            @JsonProperty("prompt_tokens") Integer promptTokens,
+            @JsonProperty("completion_tokens") Integer completionTokens,
+            @JsonProperty("total_tokens") Integer totalTokens,
+            @JsonProperty("total_time") Double totalTime) {
+
+        /**
+         * Server-side processing time in milliseconds, or null if not reported.
+         */
+        public Integer totalTimeMs() {
+            return totalTime == null ? null : (int) Math.round(totalTime * 1000);
+        }
+    }
+
+    /**
+     * Groq-specific fields; on streams the usage arrives here, in the last chunk.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record GroqExtension(Usage usage) {
+    }
+
+    /**
+     * Returns the usage block, wherever the upstream put it, or null.
+     */
+    public Usage reportedUsage() {
+        if (usage != null) {
+            return usage;
+        }
+        return groq == null ? null : groq.usage();
+    }
+
+    /**
+     * Returns the content of the first choice's message, or null if absent.
+     */
+    public String content() {
+        if (choices == null || choices.isEmpty() || choices.get(0).message() == null) {
+            return null;
+        }
+        return choices.get(0).message().content();
+    }
+
+    /**
+     * Returns the content of the first choice's delta, or null if absent.
+     */
+    public String deltaContent() {
+        if (choices == null || choices.isEmpty() || choices.get(0).delta() == null) {
+            return null;
+        }
+        return choices.get(0).delta().content();
+    }
+}
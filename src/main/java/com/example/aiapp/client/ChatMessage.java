@@ -0,0 +1,11 @@
+package com.example.aiapp.client;
+
+/**
+ * A single chat message, used both in requests and in completion choices.
+ */
+public record ChatMessage(String role, String content) {
+
+    public static ChatMessage user(String content) {
+        return new ChatMessage("user", content);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.aiapp.client;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Client for one OpenAI-compatible chat-completions endpoint and API key
+ * (Groq by default).
+ *
+ * Clients share one {@link HttpClient}, built once by {@link #httpClient} and
+ * reused for every call, so connections (and their TLS sessions) are kept
+ * alive and pooled instead of being re-established per request. HTTP/2 is
+ * negotiated when the server supports it, in which case calls are
+ * multiplexed over a single connection. The headers of every successful
+ * response go to {@code onHeaders}, for the rate-limit counters in them.
+ */
+public class GroqClient {
+
+    private final RestClient restClient;
+
+    private final JsonMapper jsonMapper;
+
+    private final Consumer<HttpHeaders> onHeaders;
+
+    public GroqClient(
+            JsonMapper jsonMapper,
+            String url,
+            String apiKey,
+            int maxConnections,
+            long connectTimeoutMs,
+            long readTimeoutMs) {
+        this(jsonMapper, httpClient(maxConnections, connectTimeoutMs), url, apiKey, readTimeoutMs, headers -> {
+        });
+    }
+
+    public GroqClient(
+            JsonMapper jsonMapper,
+            HttpClient httpClient,
+            String url,
+            String apiKey,
+            long readTimeoutMs,
+            Consumer<HttpHeaders> onHeaders) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+
+        this.jsonMapper = jsonMapper;
+        this.onHeaders = onHeaders;
+        this.restClient = RestClient.builder()
+                .requestFactory(requestFactory)
+                .baseUrl(url)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .build();
+    }
+
+    /**
+     * Builds the HTTP client to share between {@link GroqClient}s.
+     */
+    public static HttpClient httpClient(int maxConnections, long connectTimeoutMs) {
+        // Caps idle HTTP/1.1 connections kept by the JDK pool; read once when the
+        // first HttpClient is created, so an explicit -D flag still wins.
+        if (System.getProperty("jdk.httpclient.connectionPoolSize") == null) {
+            System.setProperty("jdk.httpclient.connectionPoolSize", String.valueOf(maxConnections));
+        }
+
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    /**
+     * Sends a blocking completion request.
+     *
+     * @return the decoded response, or null if the body was empty
+     */
+    public ChatCompletionResponse complete(ChatCompletionRequest request) {
+        ResponseEntity<ChatCompletionResponse> response = restClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(request)
+                .retrieve()
+                .toEntity(ChatCompletionResponse.class);
+        onHeaders.accept(response.getHeaders());
+        return response.getBody();
+    }
+
+    /**
+     * Sends a streaming completion request and forwards each content delta to
+     * {@code onToken} as it arrives.
+     *
+     * @return the assembled content of all deltas, and the reported usage
+     */
+    public StreamedCompletion stream(ChatCompletionRequest request, Consumer<String> onToken) {
+        return restClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .body(request.streaming())
+                .exchange((req, response) -> {
+                    if (response.getStatusCode().isError()) {
+                        throw new RestClientResponseException("Upstream returned " + response.getStatusCode(),
+                                response.getStatusCode(), response.getStatusText(), response.getHeaders(),
+                                null, null);
+                    }
+                    onHeaders.accept(response.getHeaders());
+
+                    StringBuilder assembled = new StringBuilder();
+                    ChatCompletionResponse.Usage usage = null;
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+
+                        String data = line.substring(5).trim();
+                        if ("[DONE]".equals(data)) {
+                            break;
+                        }
+
+                        ChatCompletionResponse chunk = jsonMapper.readValue(data, ChatCompletionResponse.class);
+                        if (chunk.reportedUsage() != null) {
+                            usage = chunk.reportedUsage();
+                        }
+
+                        String token = chunk.deltaContent();
+                        if (token != null && !token.isEmpty()) {
+                            assembled.append(token);
+                            onToken.accept(token);
+                        }
+                    }
+                    return new StreamedCompletion(assembled.toString(), usage);
+                });
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.aiapp.client;
+
+/**
+ * Result of a streaming completion: the assembled content of all deltas and
+ * the usage reported at the end of the stream, if any.
+ */
+public record StreamedCompletion(String content, ChatCompletionResponse.Usage usage) {
+}
@@ -0,0 +1,106 @@
+package com.example.aiapp.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for the AI endpoints, kept apart from the servlet thread pool so
+ * that slow upstream calls cannot starve {@code /auth} and {@code /admin}.
+ *
+ * With {@code ai.async.virtual-threads=true} (and a Java 21+ runtime) each AI
+ * task gets its own virtual thread; concurrency is then bounded by
+ * {@link com.example.aiapp.service.AiBulkhead} rather than by the pool size.
+ */
+@Configuration
+public class AiExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(AiExecutorConfig.class);
+
+    @Value("${ai.async.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Runs streaming AI requests off the servlet threads, so an open SSE
+     * connection does not hold a request thread for the whole completion.
+     */
+    @Bean
+    public AsyncTaskExecutor aiStreamExecutor(
+            @Value("${ai.stream.pool-size:16}") int poolSize,
+            @Value("${ai.stream.queue-capacity:100}") int queueCapacity) {
+        return buildExecutor("ai-stream-", poolSize, queueCapacity);
+    }
+
+    /**
+     * Runs blocking {@code /ai/process} calls when {@code ai.async.enabled} is set.
+     */
+    @Bean
+    public AsyncTaskExecutor aiProcessExecutor(
+            @Value("${ai.async.pool-size:64}") int poolSize,
+            @Value("${ai.async.queue-capacity:200}") int queueCapacity) {
+        return buildExecutor("ai-process-", poolSize, queueCapacity);
+    }
+
+    /**
+     * Fans out the items of {@code /ai/process/batch}. Kept separate from
+     * {@code aiProcessExecutor} so a batch handler running there cannot
+     * deadlock waiting on its own pool.
+     */
+    @Bean
+    public AsyncTaskExecutor aiBatchExecutor(
+            @Value("${ai.batch.pool-size:32}") int poolSize,
+            @Value("${ai.batch.queue-capacity:1000}") int queueCapacity) {
+        return buildExecutor("ai-batch-", poolSize, queueCapacity);
+    }
+
+    /**
+     * Runs the per-part calls of long inputs (see
+     * {@link com.example.aiapp.service.LongInputSummarizer}). Separate from
+     * the other pools because the waiting request may itself be running on
+     * one of them.
+     */
+    @Bean
+    public AsyncTaskExecutor aiChunkExecutor(
+            @Value("${ai.long-input.pool-size:32}") int poolSize,
+            @Value("${ai.long-input.queue-capacity:1000}") int queueCapacity) {
+        return buildExecutor("ai-chunk-", poolSize, queueCapacity);
+    }
+
+    /**
+     * Writes {@code /ai/history/export} and {@code /admin/requests/export}
+     * responses. Each running export holds a database connection, so the pool
+     * is kept well below the connection pool size; exports beyond pool plus
+     * queue are rejected with 503.
+     */
+    @Bean
+    public AsyncTaskExecutor aiExportExecutor(
+            @Value("${ai.export.pool-size:4}") int poolSize,
+            @Value("${ai.export.queue-capacity:8}") int queueCapacity) {
+        return buildExecutor("ai-export-", poolSize, queueCapacity);
+    }
+
+    private AsyncTaskExecutor buildExecutor(String threadNamePrefix, int poolSize, int queueCapacity) {
+        if (virtualThreads) {
+            if (Runtime.version().feature() >= 21) {
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+                executor.setVirtualThreads(true);
+                return executor;
+            }
+            log.warn("ai.async.virtual-threads requires Java 21+, using a platform thread pool for {}",
+                    threadNamePrefix);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
+}
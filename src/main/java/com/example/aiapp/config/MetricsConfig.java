@@ -0,0 +1,40 @@
+package com.example.aiapp.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.aiapp.service.AiBulkhead;
+import com.example.aiapp.service.AiCircuitBreaker;
+import com.example.aiapp.service.RequestCoalescer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Gauges for the in-memory queues and limiters on the AI path. Timers and
+ * the write-behind / password-hashing queues are registered by their owning
+ * components; the AI executors are picked up by Spring Boot's executor
+ * metrics, and every endpoint is timed as {@code http.server.requests}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder aiPathGauges(AiBulkhead aiBulkhead, RequestCoalescer requestCoalescer,
+            AiCircuitBreaker aiCircuitBreaker) {
+        return registry -> {
+            Gauge.builder("ai.bulkhead.active", aiBulkhead, AiBulkhead::activeCount)
+                    .description("Upstream AI calls in progress")
+                    .register(registry);
+            Gauge.builder("ai.bulkhead.waiting", aiBulkhead, AiBulkhead::waitingCount)
+                    .description("Upstream AI calls waiting for a permit")
+                    .register(registry);
+            Gauge.builder("ai.coalescer.in.flight", requestCoalescer, RequestCoalescer::inFlightCount)
+                    .description("Distinct prompts currently being generated")
+                    .register(registry);
+            Gauge.builder("ai.circuit.state", aiCircuitBreaker, cb -> cb.getState().ordinal())
+                    .description("Upstream circuit: 0 closed, 1 open, 2 half-open")
+                    .register(registry);
+        };
+    }
+}
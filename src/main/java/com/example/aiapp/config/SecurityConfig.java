@@ -1,29 +1,134 @@
 package com.example.aiapp.config;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+import com.example.aiapp.security.TokenAuthenticationFilter;
+import com.example.aiapp.security.TokenRevocationCache;
+import com.example.aiapp.security.TokenService;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
 
 @Configuration
 public class SecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
+    private static final int MIN_BCRYPT_STRENGTH = 10;
+    private static final int MAX_BCRYPT_STRENGTH = 16;
+
+    /**
+     * BCrypt with a cost factor chosen at startup so that one hash takes about
+     * {@code security.password.target-hash-ms} on this machine (never below
+     * the library default of 10). Set {@code security.password.bcrypt-strength}
+     * to pin it instead. Stored hashes with a different cost are upgraded on
+     * the user's next login.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(); // 🔐 BCrypt enabled
+    public PasswordEncoder passwordEncoder(
+            @Value("${security.password.bcrypt-strength:0}") int strength,
+            @Value("${security.password.target-hash-ms:250}") long targetHashMs) {
+        if (strength <= 0) {
+            strength = calibrateBCryptStrength(targetHashMs);
+        }
+        return new BCryptPasswordEncoder(strength); // 🔐 BCrypt enabled
+    }
+
+    // each step of the cost factor doubles the work, so one timing at the
+    // minimum strength is enough to extrapolate
+    private static int calibrateBCryptStrength(long targetHashMs) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(MIN_BCRYPT_STRENGTH);
+        probe.encode("warm-up");
+
+        long start = System.nanoTime();
+        probe.encode("calibration");
+        double elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        int strength = bcryptStrengthFor(elapsedMs, targetHashMs);
+
+        log.info("BCrypt cost {} takes {} ms here; using cost {} for a {} ms target",
+                MIN_BCRYPT_STRENGTH, Math.round(elapsedMs), strength, targetHashMs);
+        return strength;
+    }
+
+    /**
+     * Highest cost (within the allowed range) whose hash takes at most
+     * {@code targetHashMs}, given the time of one hash at the minimum cost.
+     */
+    static int bcryptStrengthFor(double minStrengthMs, long targetHashMs) {
+        int steps = (int) Math.floor(Math.log(targetHashMs / Math.max(minStrengthMs, 1.0)) / Math.log(2));
+        return Math.min(MAX_BCRYPT_STRENGTH, Math.max(MIN_BCRYPT_STRENGTH, MIN_BCRYPT_STRENGTH + steps));
     }
 
+    /**
+     * Stateless: every API call carries a signed token from /auth/login or
+     * /auth/signup, so no user or admin row is read to authorize it.
+     *
+     * The Prometheus scrape is for admins, or for a scraper presenting
+     * {@code metrics.scrape-token} as its bearer token (user tokens expire,
+     * so a scraper could not keep one).
+     */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+            HttpSecurity http,
+            TokenService tokenService,
+            TokenRevocationCache revocationCache,
+            @Value("${metrics.scrape-token:}") String scrapeToken) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // the original request was already authorized (SSE / async results, error pages)
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/prometheus").access(adminOrScraper(scrapeToken))
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
+                .requestMatchers("/admin/**").hasRole("ADMIN")
+                .requestMatchers("/ai/**").authenticated()
+                .requestMatchers(HttpMethod.PUT, "/auth/update").authenticated()
+                .requestMatchers("/auth/delete/**").authenticated()
                 .anyRequest().permitAll()
             )
+            .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService, revocationCache),
+                    UsernamePasswordAuthenticationFilter.class)
             .formLogin(form -> form.disable());
 
         return http.build();
     }
-}
\ No newline at end of file
+
+    private static AuthorizationManager<RequestAuthorizationContext> adminOrScraper(String scrapeToken) {
+        byte[] expected = ("Bearer " + scrapeToken).getBytes(StandardCharsets.UTF_8);
+        return (authentication, context) -> {
+            boolean admin = authentication.get() != null && authentication.get().getAuthorities().stream()
+                    .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+            boolean scraper = !scrapeToken.isBlank() && presents(context.getRequest(), expected);
+            return new AuthorizationDecision(admin || scraper);
+        };
+    }
+
+    private static boolean presents(HttpServletRequest request, byte[] expectedHeader) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return header != null && MessageDigest.isEqual(header.getBytes(StandardCharsets.UTF_8), expectedHeader);
+    }
+}
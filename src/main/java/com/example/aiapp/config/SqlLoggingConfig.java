@@ -0,0 +1,39 @@
+package com.example.aiapp.config;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Replaces {@code show-sql}: Hibernate logs every statement slower than
+ * {@code hibernate.log_slow_query} ms (logger {@code org.hibernate.SQL_SLOW}),
+ * and a random {@code sql.log.sample-rate} fraction of all statements is
+ * logged under {@code com.example.aiapp.sql} to show the query mix without
+ * printing every statement.
+ */
+@Configuration
+public class SqlLoggingConfig {
+
+    private static final Logger sqlLog = LoggerFactory.getLogger("com.example.aiapp.sql");
+
+    @Bean
+    public HibernatePropertiesCustomizer sampledSqlLogging(@Value("${sql.log.sample-rate:0}") double sampleRate) {
+        return properties -> {
+            if (sampleRate > 0) {
+                properties.put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+                    if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                        sqlLog.info("Sampled SQL: {}", sql);
+                    }
+                    return sql;
+                });
+            }
+        };
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.aiapp.controller;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,21 +11,46 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.aiapp.dto.AdminRequestRowDto;
+import com.example.aiapp.dto.CursorPageDto;
 import com.example.aiapp.entity.AiRequest;
 import com.example.aiapp.entity.User;
 import com.example.aiapp.repository.AiRequestRepository;
 import com.example.aiapp.repository.UserRepository;
-
+import com.example.aiapp.security.CurrentUser;
+import com.example.aiapp.security.TokenRevocationCache;
+import com.example.aiapp.service.AiBulkhead;
+import com.example.aiapp.service.AiCircuitBreaker;
+import com.example.aiapp.service.AiRateLimiter;
+import com.example.aiapp.service.AiRetryPolicy;
+import com.example.aiapp.service.AnalyticsService;
+import com.example.aiapp.service.AiRequestWriter;
+import com.example.aiapp.service.HistoryArchiver;
+import com.example.aiapp.service.HistoryExporter;
+import com.example.aiapp.service.HistorySearchIndex;
+import com.example.aiapp.service.KeysetCursor;
+import com.example.aiapp.service.LongInputSummarizer;
+import com.example.aiapp.service.PasswordHashingService;
+import com.example.aiapp.service.RequestCoalescer;
+import com.example.aiapp.service.ResponseCache;
+import com.example.aiapp.service.TextCompressionMigration;
+import com.example.aiapp.service.UpstreamPool;
+import com.example.aiapp.service.UserEmailLookup;
+
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.transaction.Transactional;
 
 @RestController
@@ -36,21 +63,69 @@ public class AdminController {
     @Autowired
     private AiRequestRepository aiRequestRepository;
 
-    // ================= ADMIN VALIDATION =================
+    @Autowired
+    private ResponseCache responseCache;
 
-    private void validateAdmin(Long adminId) {
-        User admin = userRepository.findById(adminId)
-                .orElseThrow(() -> new RuntimeException("Admin not found"));
+    @Autowired
+    private RequestCoalescer requestCoalescer;
 
-        if (!"ADMIN".equalsIgnoreCase(admin.getRole())) {
-            throw new RuntimeException("Access denied");
-        }
+    @Autowired
+    private AiRequestWriter aiRequestWriter;
+
+    @Autowired
+    private AiBulkhead aiBulkhead;
+
+    @Autowired
+    private UserEmailLookup userEmailLookup;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private TokenRevocationCache tokenRevocationCache;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private AiRateLimiter aiRateLimiter;
+
+    @Autowired
+    private AiCircuitBreaker aiCircuitBreaker;
+
+    @Autowired
+    private AiRetryPolicy aiRetryPolicy;
+
+    @Autowired
+    private UpstreamPool upstreamPool;
+
+    @Autowired
+    private LongInputSummarizer longInputSummarizer;
+
+    @Autowired
+    private TextCompressionMigration textCompressionMigration;
+
+    @Autowired
+    private HistorySearchIndex historySearchIndex;
+
+    @Autowired
+    private HistoryExporter historyExporter;
+
+    @Autowired
+    private HistoryArchiver historyArchiver;
+
+    // ================= ADMIN VALIDATION =================
+
+    // the role comes from the signed token, so this needs no database lookup;
+    // adminId is optional and, if sent, must be the token's own id
+    private Long validateAdmin(Long adminId) {
+        return CurrentUser.requireAdmin(adminId);
     }
 
     // ================= USERS (PAGINATED) =================
     @GetMapping("/users")
     public Page<User> getAllUsers(
-            @RequestParam Long adminId,
+            @RequestParam(required = false) Long adminId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size) {
 
@@ -66,15 +141,20 @@ public class AdminController {
     @Transactional
     public ResponseEntity<Void> deleteUser(
             @PathVariable Long id,
-            @RequestParam Long adminId
+            @RequestParam(required = false) Long adminId
     ) {
-        validateAdmin(adminId);
+        Long currentAdminId = validateAdmin(adminId);
 
-        if (id.equals(adminId)) {
+        if (id.equals(currentAdminId)) {
             return ResponseEntity.badRequest().build();
         }
 
-        userRepository.deleteById(id);
+        userRepository.findById(id).ifPresent(user -> {
+            userRepository.delete(user);
+            analyticsService.onUserDeleted(user.getRole());
+        });
+        userEmailLookup.evict(id);
+        tokenRevocationCache.revoke(id);
 
         return ResponseEntity.noContent().build(); // 204
     }
@@ -86,7 +166,7 @@ public class AdminController {
     public ResponseEntity<String> changeUserRole(
             @PathVariable Long id,
             @RequestBody Map<String, String> payload,
-            @RequestParam Long adminId
+            @RequestParam(required = false) Long adminId
     ) {
         validateAdmin(adminId);
 
@@ -95,8 +175,12 @@ public class AdminController {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        String oldRole = user.getRole();
         user.setRole(role);
         userRepository.save(user);
+        analyticsService.onUserRoleChanged(oldRole, role);
+        // tokens still carry the old role; make the user sign in again
+        tokenRevocationCache.revoke(id);
 
         return ResponseEntity.ok("Role updated");
     }
@@ -105,48 +189,103 @@ public class AdminController {
 
     @GetMapping("/requests")
     public Map<String, Object> getRequests(
-            @RequestParam Long adminId,
+            @RequestParam(required = false) Long adminId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size
     ) {
         validateAdmin(adminId);
 
-        Page<AiRequest> requestPage =
-                aiRequestRepository.findAllByOrderByCreatedAtDesc(
+        // one joined query for the rows (plus the count), not one user lookup per row
+        Page<AdminRequestRowDto> requestPage =
+                aiRequestRepository.findAllWithUserEmail(
                         PageRequest.of(page, size)
                 );
 
-        List<Map<String, Object>> requests =
-                requestPage.getContent().stream().map(r -> {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("id", r.getId());
-                    map.put("action", r.getAction());
-                    map.put("createdAt", r.getCreatedAt());
-                    map.put("inputText", r.getInputText());
-                    map.put("output", r.getOutput());
+        return pageResponse(requestPage);
+    }
+
+    static Map<String, Object> pageResponse(Page<?> page) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", page.getContent());
+        response.put("totalElements", page.getTotalElements());
+        response.put("totalPages", page.getTotalPages());
+        return response;
+    }
 
-                    User user = userRepository.findById(r.getUserId()).orElse(null);
-                    map.put("userEmail", user != null ? user.getEmail() : "Unknown");
+    /**
+     * Keyset-paginated listing of all requests, newest first. Pass the
+     * previous response's {@code next} value as {@code cursor}.
+     */
+    @GetMapping("/requests/scroll")
+    public CursorPageDto<AdminRequestRowDto> getRequestsPage(
+            @RequestParam(required = false) Long adminId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size
+    ) {
+        validateAdmin(adminId);
 
-                    return map;
-                }).toList();
+        KeysetCursor position = KeysetCursor.decode(cursor);
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("content", requests);
-        response.put("totalElements", requestPage.getTotalElements());
-        response.put("totalPages", requestPage.getTotalPages());
+        List<AiRequest> rows = position == null
+                ? aiRequestRepository.findFirstPage(KeysetCursor.probeLimit(size))
+                : aiRequestRepository.findPageBefore(
+                        position.createdAt(), position.id(), KeysetCursor.probeLimit(size));
 
-        return response;
+        return requestRowsPage(rows, size, userEmailLookup);
+    }
+
+    // one email lookup for the whole page, then the row mapping
+    static CursorPageDto<AdminRequestRowDto> requestRowsPage(
+            List<AiRequest> rows, int size, UserEmailLookup userEmailLookup) {
+        Map<Long, String> emails = userEmailLookup.emailsFor(
+                rows.stream().map(AiRequest::getUserId).toList());
+
+        return KeysetCursor.page(rows, size, r -> new AdminRequestRowDto(
+                r.getId(),
+                r.getAction(),
+                r.getCreatedAt(),
+                r.getInputText(),
+                r.getOutput(),
+                emails.getOrDefault(r.getUserId(), "Unknown")));
+    }
+
+    /**
+     * Downloads all requests, or those of one user, one action and/or a date
+     * range, as NDJSON or CSV, streamed from the database as it is read.
+     */
+    @GetMapping("/requests/export")
+    public ResponseEntity<StreamingResponseBody> exportRequests(
+            @RequestParam(required = false) Long adminId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request
+    ) {
+        validateAdmin(adminId);
+
+        return ExportResponses.attachment(request, historyExporter,
+                new HistoryExporter.Filter(userId, action, from, to),
+                HistoryExporter.Format.parse(format), gzip,
+                userId == null ? "ai-requests" : "ai-requests-user-" + userId);
+    }
+
+    @GetMapping("/export")
+    public Map<String, Object> getExportStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return historyExporter.stats();
     }
 
     @DeleteMapping("/requests/{id}")
     @Transactional
     public ResponseEntity<Void> deleteRequest(
             @PathVariable Long id,
-            @RequestParam Long adminId
+            @RequestParam(required = false) Long adminId
     ) {
         validateAdmin(adminId);
-        aiRequestRepository.deleteById(id);
+        aiRequestWriter.delete(id);
         return ResponseEntity.noContent().build(); // 204
     }
     
@@ -154,21 +293,236 @@ public class AdminController {
     // ================= ANALYTICS =================
 
     @GetMapping("/analytics")
-    public Map<String, Object> getAnalytics(@RequestParam Long adminId) {
+    public Map<String, Object> getAnalytics(@RequestParam(required = false) Long adminId) {
+
+        validateAdmin(adminId);
+
+        // served from incrementally maintained counters, no COUNT(*) scans
+        return analyticsService.getAnalytics();
+    }
+
+    /**
+     * Token usage and upstream latency per action, plus the heaviest users.
+     */
+    @GetMapping("/usage")
+    public Map<String, Object> getUsage(@RequestParam(required = false) Long adminId) {
+
+        validateAdmin(adminId);
+
+        return analyticsService.getUsage();
+    }
+
+    @PostMapping("/analytics/reconcile")
+    public Map<String, Object> reconcileAnalytics(@RequestParam(required = false) Long adminId) {
+
+        validateAdmin(adminId);
+
+        analyticsService.reconcile();
+        return analyticsService.getAnalytics();
+    }
+
+    // ================= RESPONSE CACHE =================
+
+    @GetMapping("/cache")
+    public Map<String, Object> getCacheStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return responseCache.stats();
+    }
+
+    @DeleteMapping("/cache")
+    public ResponseEntity<Void> clearCache(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        responseCache.clear();
+        return ResponseEntity.noContent().build(); // 204
+    }
+
+    // ================= REQUEST COALESCING =================
+
+    @GetMapping("/coalescing")
+    public Map<String, Object> getCoalescingStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return requestCoalescer.stats();
+    }
+
+    // ================= WRITE-BEHIND QUEUE =================
+
+    @GetMapping("/writer")
+    public Map<String, Object> getWriterStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return aiRequestWriter.stats();
+    }
+
+    // ================= AI BULKHEAD =================
+
+    @GetMapping("/bulkhead")
+    public Map<String, Object> getBulkheadStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return aiBulkhead.stats();
+    }
+
+    // ================= CIRCUIT BREAKER / RETRIES =================
+
+    @GetMapping("/circuit")
+    public Map<String, Object> getCircuitStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+
+        Map<String, Object> stats = new HashMap<>(aiCircuitBreaker.stats());
+        stats.put("retry", aiRetryPolicy.stats());
+        return stats;
+    }
 
+    // ================= UPSTREAM POOL =================
+
+    /**
+     * Per-member latency, quota and ejection state of the upstream pool.
+     */
+    @GetMapping("/upstream")
+    public Map<String, Object> getUpstreamStats(@RequestParam(required = false) Long adminId) {
         validateAdmin(adminId);
+        return upstreamPool.stats();
+    }
 
-        long totalUsers = userRepository.count();
-        long totalRequests = aiRequestRepository.count();
-        long totalAdmins = userRepository.countByRole("ADMIN");
-        long totalNormalUsers = totalUsers - totalAdmins;
+    // ================= LONG INPUTS =================
 
-        Map<String, Object> data = new HashMap<>();
-        data.put("totalUsers", totalUsers);
-        data.put("totalRequests", totalRequests);
-        data.put("totalAdmins", totalAdmins);
-        data.put("totalNormalUsers", totalNormalUsers);
+    @GetMapping("/long-input")
+    public Map<String, Object> getLongInputStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return longInputSummarizer.stats();
+    }
+
+    // ================= TEXT COMPRESSION =================
 
-        return data;
+    @GetMapping("/compression")
+    public Map<String, Object> getCompressionStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return textCompressionMigration.stats();
+    }
+
+    /**
+     * Starts re-encoding old rows in the background; poll {@code GET /admin/compression}.
+     */
+    @PostMapping("/compression/migrate")
+    public Map<String, Object> startCompressionMigration(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("started", textCompressionMigration.start());
+        return response;
+    }
+
+    @PostMapping("/compression/migrate/stop")
+    public Map<String, Object> stopCompressionMigration(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        textCompressionMigration.stop();
+        return textCompressionMigration.stats();
+    }
+
+    // ================= HISTORY SEARCH =================
+
+    @GetMapping("/search")
+    public Map<String, Object> getSearchStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return historySearchIndex.stats();
+    }
+
+    /**
+     * Rebuilds one user's search partition from the database now, or with no
+     * {@code userId} drops every partition so each reloads on its next search.
+     */
+    @PostMapping("/search/rebuild")
+    public Map<String, Object> rebuildSearchIndex(
+            @RequestParam(required = false) Long adminId,
+            @RequestParam(required = false) Long userId) {
+        validateAdmin(adminId);
+
+        if (userId == null) {
+            historySearchIndex.invalidate(null);
+        } else {
+            historySearchIndex.rebuild(userId);
+        }
+        return historySearchIndex.stats();
+    }
+
+    // ================= RETENTION =================
+
+    @GetMapping("/retention")
+    public Map<String, Object> getRetentionStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return historyArchiver.stats();
+    }
+
+    /**
+     * Archives and deletes expired rows now, in the background; poll
+     * {@code GET /admin/retention}.
+     */
+    @PostMapping("/retention/run")
+    public Map<String, Object> startRetention(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("started", historyArchiver.start());
+        return response;
+    }
+
+    @PostMapping("/retention/stop")
+    public Map<String, Object> stopRetention(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        historyArchiver.stop();
+        return historyArchiver.stats();
+    }
+
+    // ================= ARCHIVE =================
+
+    /**
+     * Downloads archived requests matching the filters as NDJSON, read from
+     * the archive files as it is sent.
+     */
+    @GetMapping("/archive/requests")
+    public ResponseEntity<StreamingResponseBody> exportArchivedRequests(
+            @RequestParam(required = false) Long adminId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request
+    ) {
+        validateAdmin(adminId);
+
+        HistoryExporter.Filter filter = new HistoryExporter.Filter(userId, action, from, to);
+        return ExportResponses.attachment(request, historyExporter, HistoryExporter.Format.NDJSON, gzip,
+                userId == null ? "archived-requests" : "archived-requests-user-" + userId,
+                out -> historyArchiver.export(filter, gzip, out));
+    }
+
+    /**
+     * Puts archived requests matching the filters back into the history.
+     */
+    @PostMapping("/archive/restore")
+    public Map<String, Object> restoreArchivedRequests(
+            @RequestParam(required = false) Long adminId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) throws IOException {
+        validateAdmin(adminId);
+        return historyArchiver.restore(new HistoryExporter.Filter(userId, action, from, to));
+    }
+
+    // ================= RATE LIMITING =================
+
+    @GetMapping("/rate-limit")
+    public Map<String, Object> getRateLimitStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return aiRateLimiter.stats();
+    }
+
+    // ================= PASSWORD HASHING =================
+
+    @GetMapping("/password-hashing")
+    public Map<String, Object> getPasswordHashingStats(@RequestParam(required = false) Long adminId) {
+        validateAdmin(adminId);
+        return passwordHashingService.stats();
     }
-}
\ No newline at end of file
+}
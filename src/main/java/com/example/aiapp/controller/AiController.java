@@ -1,19 +1,45 @@
 package com.example.aiapp.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.aiapp.dto.AiBatchRequestDto;
+import com.example.aiapp.dto.AiBatchResultDto;
 import com.example.aiapp.dto.AiHistoryDto;
+import com.example.aiapp.dto.AiHistorySearchHitDto;
+import com.example.aiapp.dto.AiHistorySummaryDto;
 import com.example.aiapp.dto.AiRequestDto;
+import com.example.aiapp.dto.CursorPageDto;
+import com.example.aiapp.security.AuthenticatedUser;
+import com.example.aiapp.security.CurrentUser;
+import com.example.aiapp.service.AiRateLimiter;
+import com.example.aiapp.service.AnalyticsService;
 import com.example.aiapp.service.GeminiService;
+import com.example.aiapp.service.HistoryExporter;
+import com.example.aiapp.service.HistorySearchIndex;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/ai")
@@ -24,6 +50,32 @@ public class AiController {
     @Autowired
     private GeminiService geminiService;
 
+    @Autowired
+    @Qualifier("aiStreamExecutor")
+    private AsyncTaskExecutor aiStreamExecutor;
+
+    @Autowired
+    @Qualifier("aiProcessExecutor")
+    private AsyncTaskExecutor aiProcessExecutor;
+
+    @Autowired
+    private AiRateLimiter aiRateLimiter;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private HistorySearchIndex historySearchIndex;
+
+    @Autowired
+    private HistoryExporter historyExporter;
+
+    @Value("${ai.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${ai.stream.timeout-ms:120000}")
+    private long streamTimeoutMs;
+
     public AiController(GeminiService service) {
         this.service = service;
     }
@@ -32,27 +84,197 @@ public class AiController {
     public Page<AiHistoryDto> getHistory(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size,
-            @RequestParam Long userId) {
-        return service.getHistory(page, size, userId);
+            @RequestParam(required = false) Long userId) {
+        return service.getHistory(page, size, CurrentUser.resolveUserId(userId));
+    }
+
+    /**
+     * Cursor-based variant of {@code /history}; pass the previous response's
+     * {@code next} value as {@code cursor} to get the following page.
+     */
+    @GetMapping("/history/scroll")
+    public CursorPageDto<AiHistoryDto> getHistoryPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size,
+            @RequestParam(required = false) Long userId) {
+        return service.getHistoryPage(CurrentUser.resolveUserId(userId), cursor, size);
+    }
+
+    /**
+     * Lightweight history list: previews only, full text via {@code /history/{id}}.
+     */
+    @GetMapping("/history/summaries")
+    public Page<AiHistorySummaryDto> getHistorySummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "5") int size,
+            @RequestParam(required = false) Long userId) {
+        return service.getHistorySummaries(page, size, CurrentUser.resolveUserId(userId));
+    }
+
+    /**
+     * Full-text search over the user's history: entries containing every
+     * term of {@code q}, best match first, with snippets around the matches.
+     */
+    @GetMapping("/history/search")
+    public Page<AiHistorySearchHitDto> searchHistory(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "5") int size,
+            @RequestParam(required = false) Long userId) {
+        return historySearchIndex.search(CurrentUser.resolveUserId(userId), q, page, size);
+    }
+
+    /**
+     * Downloads the user's whole history (optionally one action and/or a
+     * date range) as NDJSON or CSV, streamed from the database as it is read.
+     */
+    @GetMapping("/history/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long userId,
+            HttpServletRequest request) {
+        Long resolvedUserId = CurrentUser.resolveUserId(userId);
+
+        return ExportResponses.attachment(request, historyExporter,
+                new HistoryExporter.Filter(resolvedUserId, action, from, to),
+                HistoryExporter.Format.parse(format), gzip, "ai-history-" + resolvedUserId);
+    }
+
+    @GetMapping("/history/{id}")
+    public AiHistoryDto getHistoryEntry(
+            @org.springframework.web.bind.annotation.PathVariable Long id,
+            @RequestParam(required = false) Long userId) {
+        return service.getHistoryEntry(id, CurrentUser.resolveUserId(userId));
+    }
+
+    /**
+     * The user's own token usage and average upstream latency, in total and
+     * per action.
+     */
+    @GetMapping("/usage")
+    public Map<String, Object> getUsage(@RequestParam(required = false) Long userId) {
+        return analyticsService.getUserUsage(CurrentUser.resolveUserId(userId));
     }
 
     @org.springframework.web.bind.annotation.DeleteMapping("/history/{id}")
     public Map<String, Boolean> deleteHistory(@org.springframework.web.bind.annotation.PathVariable Long id) {
-        service.deleteHistory(id);
+        service.deleteHistory(id, CurrentUser.get());
         return Map.of("success", true);
     }
 
+    /**
+     * With {@code ai.async.enabled} the call runs on {@code aiProcessExecutor}
+     * and the servlet thread is released while the upstream call is pending.
+     */
     @PostMapping("/process")
-    public Map<String, String> process(@RequestBody AiRequestDto dto) {
+    public CompletableFuture<Map<String, String>> process(@RequestBody AiRequestDto dto) {
 
-        if (dto.getUserId() == null) {
-            throw new RuntimeException("User must be logged in to use AI");
+        // the token identifies the user; a userId in the body must match it
+        dto.setUserId(CurrentUser.resolveUserId(dto.getUserId()));
+        // long inputs are split into several upstream calls
+        admit(geminiService.upstreamCalls(dto.getText(), dto.getAction()));
+
+        if (!asyncEnabled) {
+            return CompletableFuture.completedFuture(geminiService.process(
+                    dto.getText(),
+                    dto.getAction(),
+                    dto.getUserId(),
+                    dto.isBypassCache()));
         }
 
-        return geminiService.process(
+        return CompletableFuture.supplyAsync(() -> geminiService.process(
                 dto.getText(),
                 dto.getAction(),
-                dto.getUserId());
+                dto.getUserId(),
+                dto.isBypassCache()), aiProcessExecutor);
+    }
+
+    /**
+     * Processes a list of {@code {text, action}} items for one user. The
+     * response lists one result per item, in input order.
+     */
+    @PostMapping("/process/batch")
+    public CompletableFuture<Map<String, List<AiBatchResultDto>>> processBatch(@RequestBody AiBatchRequestDto dto) {
+
+        // the token identifies the user; a userId in the body must match it
+        dto.setUserId(CurrentUser.resolveUserId(dto.getUserId()));
+        // one token per upstream call: at least one per item
+        admit(dto.getItems() == null ? 1 : dto.getItems().stream()
+                .mapToInt(item -> item == null ? 1 : geminiService.upstreamCalls(item.getText(), item.getAction()))
+                .sum());
+
+        if (!asyncEnabled) {
+            return CompletableFuture.completedFuture(Map.of("results",
+                    geminiService.processBatch(dto.getItems(), dto.getUserId(), dto.isBypassCache())));
+        }
+
+        return CompletableFuture.supplyAsync(() -> Map.of("results",
+                geminiService.processBatch(dto.getItems(), dto.getUserId(), dto.isBypassCache())),
+                aiProcessExecutor);
+    }
+
+    /**
+     * Streams the completion as server-sent events: one {@code token} event per
+     * content fragment, then a {@code done} event carrying the full output, or
+     * an {@code error} event if the upstream call fails. Long inputs first send
+     * a {@code progress} event ({@code done}, {@code total}) per condensed part.
+     */
+    @PostMapping(value = "/process/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter processStream(@RequestBody AiRequestDto dto) {
+
+        // the token identifies the user; a userId in the body must match it
+        dto.setUserId(CurrentUser.resolveUserId(dto.getUserId()));
+        admit(geminiService.upstreamCalls(dto.getText(), dto.getAction()));
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+
+        aiStreamExecutor.execute(() -> {
+            try {
+                String output = geminiService.processStream(
+                        dto.getText(),
+                        dto.getAction(),
+                        dto.getUserId(),
+                        dto.isBypassCache(),
+                        token -> send(emitter, "token", Map.of("content", token)),
+                        (done, total) -> send(emitter, "progress", Map.of("done", done, "total", total)));
+
+                send(emitter, "done", Map.of("output", output));
+                emitter.complete();
+            } catch (UncheckedIOException e) {
+                // client went away; nothing left to tell it
+                emitter.completeWithError(e.getCause());
+            } catch (RuntimeException e) {
+                try {
+                    send(emitter, "error", Map.of("message", String.valueOf(e.getMessage())));
+                    emitter.complete();
+                } catch (UncheckedIOException ignored) {
+                    emitter.completeWithError(ignored.getCause());
+                }
+            }
+        });
+
+        return emitter;
+    }
+
+    /**
+     * Charges the caller's rate limit (by the token's user and role, even when
+     * an admin acts for another user).
+     */
+    private void admit(int calls) {
+        AuthenticatedUser caller = CurrentUser.get();
+        aiRateLimiter.acquire(caller.id(), caller.role(), calls);
+    }
+
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 }
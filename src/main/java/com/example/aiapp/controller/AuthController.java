@@ -12,8 +12,12 @@ import com.example.aiapp.dto.UpdateUserRequestDto;
 import com.example.aiapp.dto.UserResponseDto;
 import com.example.aiapp.entity.User;
 import com.example.aiapp.repository.UserRepository;
-
-import org.springframework.security.crypto.password.PasswordEncoder;
+import com.example.aiapp.security.CurrentUser;
+import com.example.aiapp.security.TokenRevocationCache;
+import com.example.aiapp.security.TokenService;
+import com.example.aiapp.service.AnalyticsService;
+import com.example.aiapp.service.PasswordHashingService;
+import com.example.aiapp.service.UserEmailLookup;
 
 @RestController
 @RequestMapping("/auth")
@@ -23,7 +27,19 @@ public class AuthController {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserEmailLookup userEmailLookup;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TokenRevocationCache tokenRevocationCache;
 
     // =========================
     // SIGNUP (BCrypt)
@@ -41,18 +57,20 @@ public class AuthController {
         user.setEmail(dto.getEmail());
 
         // 🔐 HASH PASSWORD
-        String encodedPassword = passwordEncoder.encode(dto.getPassword());
+        String encodedPassword = passwordHashingService.encode(dto.getPassword());
         user.setPassword(encodedPassword);
 
         user.setRole("USER");
 
         userRepository.save(user);
+        analyticsService.onUserCreated(user.getRole());
 
         return new UserResponseDto(
                 user.getId(),
                 user.getName(),
                 user.getEmail(),
-                user.getRole()
+                user.getRole(),
+                tokenService.issue(user)
         );
     }
 
@@ -71,15 +89,25 @@ public class AuthController {
         User user = optionalUser.get();
 
         // 🔐 MATCH RAW PASSWORD WITH HASH
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
             throw new RuntimeException("Invalid password");
         }
 
+        // cost factor changed since this hash was stored: upgrade it in the background,
+        // unless the password has been changed by then
+        if (passwordHashingService.needsRehash(user.getPassword())) {
+            Long userId = user.getId();
+            String verifiedHash = user.getPassword();
+            passwordHashingService.rehashAsync(request.getPassword(),
+                    hash -> userRepository.replacePassword(userId, verifiedHash, hash));
+        }
+
         return new UserResponseDto(
                 user.getId(),
                 user.getName(),
                 user.getEmail(),
-                user.getRole()
+                user.getRole(),
+                tokenService.issue(user)
         );
     }
 
@@ -89,24 +117,28 @@ public class AuthController {
     @PutMapping("/update")
     public UserResponseDto updateUser(@RequestBody UpdateUserRequestDto dto) {
 
-        User user = userRepository.findById(dto.getId())
+        Long userId = CurrentUser.resolveUserId(dto.getId());
+
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         user.setName(dto.getName());
         user.setEmail(dto.getEmail());
 
         if (dto.getPassword() != null && !dto.getPassword().isBlank()) {
-            String encodedPassword = passwordEncoder.encode(dto.getPassword());
+            String encodedPassword = passwordHashingService.encode(dto.getPassword());
             user.setPassword(encodedPassword);
         }
 
         userRepository.save(user);
+        userEmailLookup.evict(user.getId());
 
         return new UserResponseDto(
                 user.getId(),
                 user.getName(),
                 user.getEmail(),
-                user.getRole()
+                user.getRole(),
+                tokenService.issue(user)
         );
     }
 
@@ -117,7 +149,14 @@ public class AuthController {
     @Transactional
     public ResponseEntity<String> deleteUser(@PathVariable Long id) {
 
-        userRepository.deleteById(id);
+        CurrentUser.resolveUserId(id);
+
+        userRepository.findById(id).ifPresent(user -> {
+            userRepository.delete(user);
+            analyticsService.onUserDeleted(user.getRole());
+        });
+        userEmailLookup.evict(id);
+        tokenRevocationCache.revoke(id);
         return ResponseEntity.ok("User deleted successfully");
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.example.aiapp.controller;
+
+import java.time.LocalDate;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.aiapp.service.HistoryExporter;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Builds the streamed file download shared by the user and admin export
+ * endpoints and the archive download.
+ */
+final class ExportResponses {
+
+    private ExportResponses() {
+    }
+
+    /**
+     * The body is written after the handler returns, on the exporter's pool
+     * and with its timeout rather than {@code spring.mvc.async.request-timeout},
+     * which is sized for AI calls, not for multi-gigabyte downloads.
+     */
+    static ResponseEntity<StreamingResponseBody> attachment(
+            HttpServletRequest request,
+            HistoryExporter exporter,
+            HistoryExporter.Filter filter,
+            HistoryExporter.Format format,
+            boolean gzip,
+            String name) {
+        return attachment(request, exporter, format, gzip, name,
+                out -> exporter.export(filter, format, gzip, out));
+    }
+
+    /**
+     * The same download around any body already written in {@code format}.
+     */
+    static ResponseEntity<StreamingResponseBody> attachment(
+            HttpServletRequest request,
+            HistoryExporter exporter,
+            HistoryExporter.Format format,
+            boolean gzip,
+            String name,
+            StreamingResponseBody body) {
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setTaskExecutor(exporter.executor());
+        AsyncWebRequest asyncWebRequest = asyncManager.getAsyncWebRequest();
+        if (asyncWebRequest != null) {
+            asyncWebRequest.setTimeout(exporter.timeoutMs());
+        }
+
+        String filename = name + "-" + LocalDate.now() + "." + format.extension() + (gzip ? ".gz" : "");
+        MediaType contentType = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : MediaType.parseMediaType(format.contentType() + ";charset=UTF-8");
+
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.aiapp.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of the admin request listing, with the owner's email joined in.
+ */
+public class AdminRequestRowDto {
+
+    private Long id;
+    private String action;
+    private LocalDateTime createdAt;
+    private String inputText;
+    private String output;
+    private String userEmail;
+
+    public AdminRequestRowDto(Long id, String action, LocalDateTime createdAt, String inputText, String output,
+            String userEmail) {
+        this.id = id;
+        this.action = action;
+        this.createdAt = createdAt;
+        this.inputText = inputText;
+        this.output = output;
+        this.userEmail = userEmail;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getInputText() {
+        return inputText;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+}
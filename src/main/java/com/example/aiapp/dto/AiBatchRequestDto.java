@@ -0,0 +1,39 @@
+package com.example.aiapp.dto;
+
+import java.util.List;
+
+public class AiBatchRequestDto {
+
+    private Long userId;
+
+    private boolean bypassCache;
+
+    private List<AiRequestDto> items;
+
+    public AiBatchRequestDto() {
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public boolean isBypassCache() {
+        return bypassCache;
+    }
+
+    public void setBypassCache(boolean bypassCache) {
+        this.bypassCache = bypassCache;
+    }
+
+    public List<AiRequestDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<AiRequestDto> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.aiapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item of a batch request; exactly one of output or error is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AiBatchResultDto {
+
+    private int index;
+    private String output;
+    private String error;
+
+    public AiBatchResultDto(int index, String output, String error) {
+        this.index = index;
+        this.output = output;
+        this.error = error;
+    }
+
+    public static AiBatchResultDto success(int index, String output) {
+        return new AiBatchResultDto(index, output, null);
+    }
+
+    public static AiBatchResultDto failure(int index, String error) {
+        return new AiBatchResultDto(index, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -9,6 +9,9 @@ public class AiHistoryDto {
     private String output;
     private LocalDateTime createdAt;
     private String action;
+    private Integer promptTokens;
+    private Integer completionTokens;
+    private Integer latencyMs;
 
     public AiHistoryDto(Long id, String input, String output, LocalDateTime createdAt, String action) {
         this.id = id;
@@ -18,6 +21,14 @@ public class AiHistoryDto {
         this.action = action;
     }
 
+    public AiHistoryDto(Long id, String input, String output, LocalDateTime createdAt, String action,
+            Integer promptTokens, Integer completionTokens, Integer latencyMs) {
+        this(id, input, output, createdAt, action);
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.latencyMs = latencyMs;
+    }
+
     public Long getId() {
         return id;
     }
@@ -37,4 +48,16 @@ public class AiHistoryDto {
     public String getAction() {
         return action;
     }
+
+    public Integer getPromptTokens() {
+        return promptTokens;
+    }
+
+    public Integer getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public Integer getLatencyMs() {
+        return latencyMs;
+    }
 }
@@ -0,0 +1,65 @@
+package com.example.aiapp.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One result of {@code GET /ai/history/search}: the matching history entry
+ * with its relevance score and a snippet of the input and output around the
+ * first matching term. The full record is available from
+ * {@code GET /ai/history/{id}}.
+ */
+public class AiHistorySearchHitDto {
+
+    private Long id;
+    private String action;
+    private LocalDateTime createdAt;
+    private double score;
+    private String inputSnippet;
+    private String outputSnippet;
+    private Integer promptTokens;
+    private Integer completionTokens;
+
+    public AiHistorySearchHitDto(Long id, String action, LocalDateTime createdAt, double score, String inputSnippet,
+            String outputSnippet, Integer promptTokens, Integer completionTokens) {
+        this.id = id;
+        this.action = action;
+        this.createdAt = createdAt;
+        this.score = score;
+        this.inputSnippet = inputSnippet;
+        this.outputSnippet = outputSnippet;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getInputSnippet() {
+        return inputSnippet;
+    }
+
+    public String getOutputSnippet() {
+        return outputSnippet;
+    }
+
+    public Integer getPromptTokens() {
+        return promptTokens;
+    }
+
+    public Integer getCompletionTokens() {
+        return completionTokens;
+    }
+}
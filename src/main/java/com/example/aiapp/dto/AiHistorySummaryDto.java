@@ -0,0 +1,68 @@
+package com.example.aiapp.dto;
+
+import java.time.LocalDateTime;
+
+import com.example.aiapp.entity.CompressedTextConverter;
+
+/**
+ * List-view projection of an AI request: previews of the input and output
+ * (cut in SQL, so the full TEXT columns never leave the database) instead of
+ * the full text. The full record is available from {@code GET /ai/history/{id}}.
+ *
+ * Compressed columns arrive as a longer prefix of their stored form, which is
+ * decompressed here as far as it goes.
+ */
+public class AiHistorySummaryDto {
+
+    public static final int PREVIEW_LENGTH = 200;
+
+    /** stored characters fetched for a compressed column; ~750 bytes of DEFLATE data */
+    public static final int COMPRESSED_PREVIEW_SOURCE_LENGTH = 1024;
+
+    private Long id;
+    private String action;
+    private LocalDateTime createdAt;
+    private String inputPreview;
+    private String outputPreview;
+    private Integer promptTokens;
+    private Integer completionTokens;
+
+    public AiHistorySummaryDto(Long id, String action, LocalDateTime createdAt, String inputPreview,
+            String outputPreview, Integer promptTokens, Integer completionTokens) {
+        this.id = id;
+        this.action = action;
+        this.createdAt = createdAt;
+        this.inputPreview = CompressedTextConverter.preview(inputPreview, PREVIEW_LENGTH);
+        this.outputPreview = CompressedTextConverter.preview(outputPreview, PREVIEW_LENGTH);
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getInputPreview() {
+        return inputPreview;
+    }
+
+    public String getOutputPreview() {
+        return outputPreview;
+    }
+
+    public Integer getPromptTokens() {
+        return promptTokens;
+    }
+
+    public Integer getCompletionTokens() {
+        return completionTokens;
+    }
+}
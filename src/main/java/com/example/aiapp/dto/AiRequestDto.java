@@ -7,6 +7,8 @@ public class AiRequestDto {
     private String action;
     
     private Long userId;   // ✅ required
+
+    private boolean bypassCache;
     
     public Long getUserId() {
 		return userId;
@@ -16,6 +18,14 @@ public class AiRequestDto {
 		this.userId = userId;
 	}
 
+	public boolean isBypassCache() {
+		return bypassCache;
+	}
+
+	public void setBypassCache(boolean bypassCache) {
+		this.bypassCache = bypassCache;
+	}
+
 	public AiRequestDto() {
 		// TODO Auto-generated constructor stub
 	}
@@ -0,0 +1,23 @@
+package com.example.aiapp.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of an AI request without its text columns.
+ */
+public interface AiRequestRef {
+
+    Long getId();
+
+    Long getUserId();
+
+    String getAction();
+
+    LocalDateTime getCreatedAt();
+
+    Integer getPromptTokens();
+
+    Integer getCompletionTokens();
+
+    Integer getLatencyMs();
+}
@@ -0,0 +1,26 @@
+package com.example.aiapp.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. {@code next} is an opaque cursor
+ * for the following page, or null when this is the last page.
+ */
+public class CursorPageDto<T> {
+
+    private List<T> content;
+    private String next;
+
+    public CursorPageDto(List<T> content, String next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.aiapp.dto;
+
+/**
+ * Projection of a user's id and email, for bulk lookups.
+ */
+public interface UserEmailView {
+
+    Long getId();
+
+    String getEmail();
+}
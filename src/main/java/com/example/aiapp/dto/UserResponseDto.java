@@ -6,6 +6,7 @@ public class UserResponseDto {
     private String name;
     private String email;
     private String role;
+    private String token;
     
     public UserResponseDto() {
 		// TODO Auto-generated constructor stub
@@ -19,6 +20,11 @@ public class UserResponseDto {
 		this.role = role;
 	}
 
+	public UserResponseDto(Long id, String name, String email, String role, String token) {
+		this(id, name, email, role);
+		this.token = token;
+	}
+
 	public Long getId() {
 		return id;
 	}
@@ -50,6 +56,14 @@ public class UserResponseDto {
 	public void setRole(String role) {
 		this.role = role;
 	}
+
+	public String getToken() {
+		return token;
+	}
+
+	public void setToken(String token) {
+		this.token = token;
+	}
     
     
 	
@@ -5,26 +5,33 @@ import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "ai_requests")
+@Table(name = "ai_requests", indexes = {
+		@Index(name = "idx_ai_requests_user_created_id", columnList = "user_id, created_at, id"),
+		@Index(name = "idx_ai_requests_created_id", columnList = "created_at, id")
+})
 public class AiRequest {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private Long id;
 
+	@Convert(converter = CompressedTextConverter.class)
 	@Column(name = "input_text", nullable = false, columnDefinition = "TEXT")
 	private String inputText;
 
 	@Column(nullable = false)
 	private String action;
 
+	@Convert(converter = CompressedTextConverter.class)
 	@Column(nullable = false, columnDefinition = "TEXT")
 	private String output;
 
@@ -35,6 +42,21 @@ public class AiRequest {
 	@Column(updatable = false)
 	private LocalDateTime createdAt;
 
+	// upstream usage; null when the output came from the cache or a shared call
+	@Column(name = "prompt_tokens")
+	private Integer promptTokens;
+
+	@Column(name = "completion_tokens")
+	private Integer completionTokens;
+
+	// processing time reported by the upstream
+	@Column(name = "upstream_time_ms")
+	private Integer upstreamTimeMs;
+
+	// round-trip time of the upstream call as seen by us
+	@Column(name = "latency_ms")
+	private Integer latencyMs;
+
 	public AiRequest() {
 	}
 
@@ -94,4 +116,36 @@ public class AiRequest {
 	public void setCreatedAt(LocalDateTime createdAt) {
 		this.createdAt = createdAt;
 	}
+
+	public Integer getPromptTokens() {
+		return promptTokens;
+	}
+
+	public void setPromptTokens(Integer promptTokens) {
+		this.promptTokens = promptTokens;
+	}
+
+	public Integer getCompletionTokens() {
+		return completionTokens;
+	}
+
+	public void setCompletionTokens(Integer completionTokens) {
+		this.completionTokens = completionTokens;
+	}
+
+	public Integer getUpstreamTimeMs() {
+		return upstreamTimeMs;
+	}
+
+	public void setUpstreamTimeMs(Integer upstreamTimeMs) {
+		this.upstreamTimeMs = upstreamTimeMs;
+	}
+
+	public Integer getLatencyMs() {
+		return latencyMs;
+	}
+
+	public void setLatencyMs(Integer latencyMs) {
+		this.latencyMs = latencyMs;
+	}
 }
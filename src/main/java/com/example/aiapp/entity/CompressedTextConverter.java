@@ -0,0 +1,194 @@
+package com.example.aiapp.entity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores long text columns compressed. The columns stay {@code TEXT}, so the
+ * compressed bytes are Base64-encoded behind a two-character header:
+ * <ul>
+ * <li>{@code \u001Fz} + Base64 of raw DEFLATE data</li>
+ * <li>{@code \u001Fp} + the text unchanged, for plain values that happen to
+ *     start with the marker character</li>
+ * <li>anything else is plain text, which covers every row written before
+ *     compression was enabled</li>
+ * </ul>
+ * Values shorter than {@code ai.compression.min-chars}, or that would not get
+ * smaller, are stored as they are. Reading never depends on the settings, so
+ * compression can be switched off without losing access to encoded rows.
+ *
+ * Hibernate obtains this converter from the Spring context; the JDBC writer
+ * in {@code AiRequestWriter} uses it directly.
+ */
+@Component
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, String> {
+
+    public static final char MARKER = '\u001F';
+
+    static final char DEFLATE = 'z';
+
+    static final char PLAIN = 'p';
+
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<>();
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final boolean enabled;
+    private final int minChars;
+    private final int level;
+
+    public CompressedTextConverter(
+            @Value("${ai.compression.enabled:true}") boolean enabled,
+            @Value("${ai.compression.min-chars:512}") int minChars,
+            @Value("${ai.compression.level:1}") int level) {
+        this.enabled = enabled;
+        this.minChars = minChars;
+        this.level = level;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String text) {
+        return encode(text);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String stored) {
+        return decode(stored);
+    }
+
+    /**
+     * Returns the stored form of {@code text}: compressed if enabled, long
+     * enough and worth it, otherwise the text itself (escaped if needed).
+     */
+    public String encode(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        if (enabled && text.length() >= minChars) {
+            byte[] compressed = deflate(text.getBytes(StandardCharsets.UTF_8), level);
+            // Base64 grows the bytes by a third; only keep it if the column still shrinks
+            if ((compressed.length + 2) / 3 * 4 + 2 < text.length()) {
+                return MARKER + "" + DEFLATE + Base64.getEncoder().withoutPadding().encodeToString(compressed);
+            }
+        }
+
+        return text.isEmpty() || text.charAt(0) != MARKER ? text : MARKER + "" + PLAIN + text;
+    }
+
+    /**
+     * Whether a stored value carries the compression header (compressed or
+     * escaped), as opposed to a plain legacy value.
+     */
+    public static boolean isEncoded(String stored) {
+        return stored != null && stored.length() >= 2 && stored.charAt(0) == MARKER
+                && (stored.charAt(1) == DEFLATE || stored.charAt(1) == PLAIN);
+    }
+
+    public static boolean isCompressed(String stored) {
+        return isEncoded(stored) && stored.charAt(1) == DEFLATE;
+    }
+
+    /**
+     * Returns the text of a stored value in any of the formats above.
+     */
+    public static String decode(String stored) {
+        if (!isEncoded(stored)) {
+            return stored;
+        }
+        if (stored.charAt(1) == PLAIN) {
+            return stored.substring(2);
+        }
+        return inflate(Base64.getDecoder().decode(stored.substring(2)), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns up to {@code length} characters from the start of a stored value
+     * that may itself be cut short (e.g. by {@code SUBSTRING} in SQL): DEFLATE
+     * decodes front to back, so a prefix of the compressed data yields a prefix
+     * of the text.
+     */
+    public static String preview(String storedPrefix, int length) {
+        if (storedPrefix == null) {
+            return null;
+        }
+        String text;
+        if (isCompressed(storedPrefix)) {
+            String base64 = storedPrefix.substring(2);
+            // whole 4-character Base64 groups only; the tail may be cut mid-group
+            base64 = base64.substring(0, base64.length() - base64.length() % 4);
+            text = inflate(Base64.getDecoder().decode(base64), length * 4);
+            // drop a multi-byte character cut in half at the end
+            if (text.endsWith("\uFFFD")) {
+                text = text.substring(0, text.length() - 1);
+            }
+        } else {
+            text = decode(storedPrefix);
+        }
+        return text.length() <= length ? text : text.substring(0, length);
+    }
+
+    // ================= CODEC =================
+
+    static byte[] deflate(byte[] input, int level) {
+        Deflater deflater = DEFLATERS.get();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            DEFLATERS.set(deflater);
+        }
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(input);
+        deflater.finish();
+
+        byte[] buffer = new byte[Math.max(64, input.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Inflates raw DEFLATE data as UTF-8 text, stopping after {@code maxBytes}
+     * of output or when the input runs out, whichever comes first.
+     */
+    static String inflate(byte[] input, int maxBytes) {
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(input);
+
+        // text typically compresses 2-4x; grow if it did better than that
+        byte[] out = new byte[(int) Math.min(maxBytes, Math.max(64L, input.length * 4L))];
+        int length = 0;
+        try {
+            while (length < maxBytes && !inflater.finished() && !inflater.needsInput()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, (int) Math.min(maxBytes, out.length * 2L));
+                }
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && inflater.needsDictionary()) {
+                    break;
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed text", e);
+        }
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+}
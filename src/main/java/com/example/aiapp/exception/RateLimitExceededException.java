@@ -0,0 +1,19 @@
+package com.example.aiapp.exception;
+
+/**
+ * Thrown when a caller has used up its request budget. Mapped to 429 Too
+ * Many Requests with a {@code Retry-After} header.
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.aiapp.exception;
+
+/**
+ * Thrown when a request is shed because a capacity limit has been reached.
+ * Mapped to 503 Service Unavailable.
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.aiapp.exception;
+
+/**
+ * Thrown when the AI upstream cannot produce a result: the call failed after
+ * its retries, or the circuit breaker is open. Mapped to 503 Service
+ * Unavailable, with {@code Retry-After} when the wait is known.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public UpstreamUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public UpstreamUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = 0;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
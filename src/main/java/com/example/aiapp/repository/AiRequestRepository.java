@@ -1,8 +1,19 @@
 package com.example.aiapp.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.aiapp.dto.AdminRequestRowDto;
+import com.example.aiapp.dto.AiHistorySummaryDto;
+import com.example.aiapp.dto.AiRequestRef;
 import com.example.aiapp.entity.AiRequest;
 
 public interface AiRequestRepository extends JpaRepository<AiRequest, Long> {
@@ -11,4 +22,92 @@ public interface AiRequestRepository extends JpaRepository<AiRequest, Long> {
 
     Page<AiRequest> findAllByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
 
-}
\ No newline at end of file
+    // ================= KEYSET (SEEK) PAGINATION =================
+    // Ordered on (createdAt, id) so ties on createdAt are stable; each page
+    // starts strictly after the last row of the previous one.
+
+    @Query("SELECT r FROM AiRequest r ORDER BY r.createdAt DESC, r.id DESC")
+    List<AiRequest> findFirstPage(Limit limit);
+
+    @Query("""
+            SELECT r FROM AiRequest r
+            WHERE r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)
+            ORDER BY r.createdAt DESC, r.id DESC""")
+    List<AiRequest> findPageBefore(
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Limit limit);
+
+    @Query("SELECT r FROM AiRequest r WHERE r.userId = :userId ORDER BY r.createdAt DESC, r.id DESC")
+    List<AiRequest> findFirstPageByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("""
+            SELECT r FROM AiRequest r
+            WHERE r.userId = :userId
+              AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id))
+            ORDER BY r.createdAt DESC, r.id DESC""")
+    List<AiRequest> findPageByUserIdBefore(
+            @Param("userId") Long userId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Limit limit);
+
+    // ================= HISTORY LIST PROJECTION =================
+    // Previews are cut in SQL; keep the lengths in sync with AiHistorySummaryDto.PREVIEW_LENGTH
+    // and COMPRESSED_PREVIEW_SOURCE_LENGTH. Compressed values (see CompressedTextConverter)
+    // need a longer prefix, which the DTO decompresses and cuts to the preview length.
+
+    @Query(value = """
+            SELECT new com.example.aiapp.dto.AiHistorySummaryDto(
+                r.id, r.action, r.createdAt,
+                CASE WHEN SUBSTRING(r.inputText, 1, 1) = '\u001F'
+                     THEN SUBSTRING(r.inputText, 1, 1024) ELSE SUBSTRING(r.inputText, 1, 200) END,
+                CASE WHEN SUBSTRING(r.output, 1, 1) = '\u001F'
+                     THEN SUBSTRING(r.output, 1, 1024) ELSE SUBSTRING(r.output, 1, 200) END,
+                r.promptTokens, r.completionTokens)
+            FROM AiRequest r
+            WHERE r.userId = :userId
+            ORDER BY r.createdAt DESC, r.id DESC""",
+            countQuery = "SELECT COUNT(r) FROM AiRequest r WHERE r.userId = :userId")
+    Page<AiHistorySummaryDto> findSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    Optional<AiRequest> findByIdAndUserId(Long id, Long userId);
+
+    // ================= ADMIN LISTING =================
+
+    @Query(value = """
+            SELECT new com.example.aiapp.dto.AdminRequestRowDto(
+                r.id, r.action, r.createdAt, r.inputText, r.output, COALESCE(u.email, 'Unknown'))
+            FROM AiRequest r LEFT JOIN User u ON u.id = r.userId
+            ORDER BY r.createdAt DESC""",
+            countQuery = "SELECT COUNT(r) FROM AiRequest r")
+    Page<AdminRequestRowDto> findAllWithUserEmail(Pageable pageable);
+
+    Optional<AiRequestRef> findRefById(Long id);
+
+    // ================= ANALYTICS ROLLUPS =================
+    // Used to reconcile the in-memory counters in AnalyticsService.
+
+    // one row per (user, action): request count, token sums, latency sum and sample count
+    @Query("""
+            SELECT r.userId, r.action, COUNT(r), SUM(r.promptTokens), SUM(r.completionTokens),
+                   SUM(r.latencyMs), COUNT(r.latencyMs)
+            FROM AiRequest r
+            GROUP BY r.userId, r.action""")
+    List<Object[]> usageByUserAndAction();
+
+    @Query("""
+            SELECT YEAR(r.createdAt), MONTH(r.createdAt), DAY(r.createdAt), COUNT(r)
+            FROM AiRequest r
+            WHERE r.createdAt >= :since
+            GROUP BY YEAR(r.createdAt), MONTH(r.createdAt), DAY(r.createdAt)""")
+    List<Object[]> countByDaySince(@Param("since") LocalDateTime since);
+
+    @Query("""
+            SELECT YEAR(r.createdAt), MONTH(r.createdAt), DAY(r.createdAt), HOUR(r.createdAt), COUNT(r)
+            FROM AiRequest r
+            WHERE r.createdAt >= :since
+            GROUP BY YEAR(r.createdAt), MONTH(r.createdAt), DAY(r.createdAt), HOUR(r.createdAt)""")
+    List<Object[]> countByHourSince(@Param("since") LocalDateTime since);
+
+}
@@ -1,7 +1,15 @@
 package com.example.aiapp.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.aiapp.dto.UserEmailView;
 import com.example.aiapp.entity.User;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -10,4 +18,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     long countByRole(String role);
 
-}
\ No newline at end of file
+    @Query("SELECT u.id AS id, u.email AS email FROM User u WHERE u.id IN :ids")
+    List<UserEmailView> findEmailsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT u.role, COUNT(u) FROM User u GROUP BY u.role")
+    List<Object[]> countByRoleGrouped();
+
+    /**
+     * Replaces the password hash only if it is still {@code oldHash}, so a
+     * late background rehash cannot undo a password change made meanwhile.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :id AND u.password = :oldHash")
+    int replacePassword(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("password") String password);
+
+}
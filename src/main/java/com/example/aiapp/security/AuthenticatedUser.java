@@ -0,0 +1,14 @@
+package com.example.aiapp.security;
+
+import java.time.Instant;
+
+/**
+ * Identity carried by a verified access token; used as the principal of the
+ * request's {@code Authentication}.
+ */
+public record AuthenticatedUser(Long id, String email, String role, Instant issuedAt) {
+
+    public boolean isAdmin() {
+        return "ADMIN".equalsIgnoreCase(role);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.aiapp.security;
+
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Access to the user authenticated by {@link TokenAuthenticationFilter}.
+ * Ids sent by the client are only trusted when they match the token.
+ */
+public final class CurrentUser {
+
+    private CurrentUser() {
+    }
+
+    public static AuthenticatedUser get() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser user)) {
+            throw new AuthenticationCredentialsNotFoundException("Not authenticated");
+        }
+        return user;
+    }
+
+    /**
+     * Returns the id to act on: the requested id if the caller may act for it
+     * (it is their own, or they are an admin), otherwise access is denied. A
+     * null request means "myself".
+     */
+    public static Long resolveUserId(Long requestedUserId) {
+        AuthenticatedUser user = get();
+
+        if (requestedUserId == null) {
+            return user.id();
+        }
+        if (!requestedUserId.equals(user.id()) && !user.isAdmin()) {
+            throw new AccessDeniedException("Access denied");
+        }
+        return requestedUserId;
+    }
+
+    /**
+     * Requires an admin token; if the client also sent an admin id it must
+     * be the token's own. Returns the admin's id.
+     */
+    public static Long requireAdmin(Long adminId) {
+        AuthenticatedUser user = get();
+
+        if (!user.isAdmin() || (adminId != null && !adminId.equals(user.id()))) {
+            throw new AccessDeniedException("Access denied");
+        }
+        return user.id();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.aiapp.security;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Authenticates requests carrying {@code Authorization: Bearer <token>}.
+ * Verification is purely cryptographic plus an in-memory revocation check;
+ * requests without a valid token continue unauthenticated and are rejected by
+ * the authorization rules where a login is required.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final TokenService tokenService;
+    private final TokenRevocationCache revocationCache;
+
+    public TokenAuthenticationFilter(TokenService tokenService, TokenRevocationCache revocationCache) {
+        this.tokenService = tokenService;
+        this.revocationCache = revocationCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+
+        if (header != null && header.startsWith(BEARER)) {
+            AuthenticatedUser user = tokenService.verify(header.substring(BEARER.length()).trim());
+
+            if (user != null && !revocationCache.isRevoked(user)) {
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        user, null, List.of(new SimpleGrantedAuthority("ROLE_" + user.role().toUpperCase())));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        }
+
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.aiapp.security;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Short-lived record of users whose outstanding tokens must stop working,
+ * e.g. after they were deleted or their role changed. A token is rejected if
+ * it was issued no later than the revocation, both to the millisecond, so
+ * that a token issued right after it (e.g. on signing in again after a role
+ * change) is accepted. Entries are dropped once every
+ * token they could affect has expired anyway.
+ */
+@Component
+public class TokenRevocationCache {
+
+    private final Duration tokenTtl;
+    private final Clock clock;
+
+    private final ConcurrentHashMap<Long, Instant> revokedAt = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TokenRevocationCache(@Value("${security.token.ttl-minutes:60}") long ttlMinutes) {
+        this(ttlMinutes, Clock.systemUTC());
+    }
+
+    TokenRevocationCache(long ttlMinutes, Clock clock) {
+        this.tokenTtl = Duration.ofMinutes(ttlMinutes);
+        this.clock = clock;
+    }
+
+    public void revoke(Long userId) {
+        Instant now = clock.instant();
+        revokedAt.put(userId, now.truncatedTo(ChronoUnit.MILLIS));
+        revokedAt.values().removeIf(at -> at.plus(tokenTtl).isBefore(now));
+    }
+
+    public boolean isRevoked(AuthenticatedUser user) {
+        Instant at = revokedAt.get(user.id());
+        return at != null && !user.issuedAt().isAfter(at);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.aiapp.security;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.entity.User;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Issues and verifies stateless access tokens (JWT, HS256). The token carries
+ * the user's id, email and role, so authorization needs no database lookup.
+ */
+@Component
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String HEADER = base64Url("{\"alg\":\"HS256\",\"typ\":\"JWT\"}"
+            .getBytes(StandardCharsets.UTF_8));
+
+    private final JsonMapper jsonMapper;
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    public TokenService(
+            JsonMapper jsonMapper,
+            @Value("${security.token.secret:}") String secret,
+            @Value("${security.token.ttl-minutes:60}") long ttlMinutes) {
+        this.jsonMapper = jsonMapper;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            log.warn("security.token.secret is not set; using a random key, tokens will not survive a restart");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, "HmacSHA256");
+    }
+
+    public String issue(User user) {
+        Instant now = Instant.now();
+
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", String.valueOf(user.getId()));
+        claims.put("email", user.getEmail());
+        claims.put("role", user.getRole());
+        // milliseconds (NumericDate may be fractional), so revocation can tell
+        // apart tokens issued in the same second before and after it
+        claims.put("iat", BigDecimal.valueOf(now.toEpochMilli(), 3));
+        claims.put("exp", now.plus(ttl).getEpochSecond());
+
+        String signingInput = HEADER + "." + base64Url(jsonMapper.writeValueAsBytes(claims));
+        return signingInput + "." + base64Url(sign(signingInput));
+    }
+
+    /**
+     * Returns the user the token was issued to, or null if the token is
+     * malformed, wrongly signed or expired.
+     */
+    public AuthenticatedUser verify(String token) {
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first < 0 || first == last) {
+            return null;
+        }
+
+        try {
+            String signingInput = token.substring(0, last);
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(last + 1));
+
+            if (!MessageDigest.isEqual(signature, sign(signingInput))) {
+                return null;
+            }
+
+            JsonNode claims = jsonMapper.readTree(Base64.getUrlDecoder().decode(token.substring(first + 1, last)));
+
+            if (Instant.now().getEpochSecond() >= claims.path("exp").asLong()) {
+                return null;
+            }
+
+            return new AuthenticatedUser(
+                    Long.valueOf(claims.path("sub").asString()),
+                    claims.path("email").asString(),
+                    claims.path("role").asString(),
+                    Instant.ofEpochMilli(Math.round(claims.path("iat").asDouble() * 1000)));
+        } catch (IllegalArgumentException | JacksonException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String signingInput) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac.doFinal(signingInput.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.aiapp.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.exception.ServiceBusyException;
+
+/**
+ * Caps the number of concurrent upstream AI calls. Callers beyond the limit
+ * wait in a bounded queue for up to {@code ai.bulkhead.max-wait-ms}; once the
+ * queue is full, or the wait times out, the call is rejected with
+ * {@link ServiceBusyException} instead of piling up.
+ */
+@Component
+public class AiBulkhead {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final long maxWaitMs;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AiBulkhead(
+            @Value("${ai.bulkhead.max-concurrent:32}") int maxConcurrent,
+            @Value("${ai.bulkhead.max-waiting:64}") int maxWaiting,
+            @Value("${ai.bulkhead.max-wait-ms:2000}") long maxWaitMs) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int activeCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int waitingCount() {
+        return waiting.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("active", maxConcurrent - permits.availablePermits());
+        stats.put("maxWaiting", maxWaiting);
+        stats.put("waiting", waiting.get());
+        stats.put("admitted", admitted.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) {
+            admitted.incrementAndGet();
+            return;
+        }
+
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new ServiceBusyException("AI service is busy, please try again");
+        }
+
+        try {
+            if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new ServiceBusyException("AI service is busy, please try again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            throw new ServiceBusyException("AI request was interrupted");
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        admitted.incrementAndGet();
+    }
+}
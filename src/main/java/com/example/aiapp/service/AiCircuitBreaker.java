@@ -0,0 +1,189 @@
+package com.example.aiapp.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.exception.UpstreamUnavailableException;
+
+/**
+ * Circuit breaker for the AI upstream.
+ *
+ * Outcomes of the last {@code ai.circuit.window-size} calls are kept; once at
+ * least {@code ai.circuit.minimum-calls} have been seen and the failure rate
+ * reaches {@code ai.circuit.failure-rate-threshold} percent, the circuit opens
+ * and every call fails immediately with {@link UpstreamUnavailableException}
+ * for {@code ai.circuit.open-duration-ms}. After that a single trial call is
+ * let through: success closes the circuit, failure opens it again.
+ *
+ * Only failures that say something about the upstream's health count (see
+ * {@link AiRetryPolicy#isUpstreamFailure}); a rejected request of ours does not.
+ */
+@Component
+public class AiCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(AiCircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier clock;
+
+    // ring buffer of recent outcomes, guarded by this
+    private final boolean[] failures;
+    private int position;
+    private int recorded;
+    private int failureCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    @Autowired
+    public AiCircuitBreaker(
+            @Value("${ai.circuit.window-size:20}") int windowSize,
+            @Value("${ai.circuit.minimum-calls:10}") int minimumCalls,
+            @Value("${ai.circuit.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${ai.circuit.open-duration-ms:30000}") long openDurationMs) {
+        this(windowSize, minimumCalls, failureRateThreshold, openDurationMs, System::nanoTime);
+    }
+
+    AiCircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, long openDurationMs,
+            LongSupplier clock) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.clock = clock;
+        this.failures = new boolean[windowSize];
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        boolean trial = acquirePermission();
+        try {
+            T result = call.get();
+            onResult(trial, false);
+            return result;
+        } catch (RuntimeException e) {
+            onResult(trial, AiRetryPolicy.isUpstreamFailure(e));
+            throw e;
+        } catch (Error e) {
+            // says nothing about the upstream, but a trial must not stay in flight for good
+            if (trial) {
+                releaseTrial();
+            }
+            throw e;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("state", state.name());
+            stats.put("recentCalls", recorded);
+            stats.put("recentFailures", failureCount);
+        }
+        stats.put("failureRateThreshold", failureRateThreshold);
+        stats.put("timesOpened", opened.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    /**
+     * @return true if this call is the half-open trial
+     */
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN) {
+            long remaining = openedAt + openDurationNanos - clock.getAsLong();
+            if (remaining > 0) {
+                rejected.incrementAndGet();
+                throw new UpstreamUnavailableException("AI service unavailable. Please try again later.",
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1)));
+            }
+            state = State.HALF_OPEN;
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                rejected.incrementAndGet();
+                throw new UpstreamUnavailableException("AI service unavailable. Please try again later.", 1);
+            }
+            trialInFlight = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    // still half-open: the next call is the trial
+    private synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    private synchronized void onResult(boolean trial, boolean failed) {
+        if (trial) {
+            trialInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                log.info("AI circuit closed after successful trial call");
+                state = State.CLOSED;
+                resetWindow();
+            }
+            return;
+        }
+
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (recorded == windowSize && failures[position]) {
+            failureCount--;
+        }
+        failures[position] = failed;
+        if (failed) {
+            failureCount++;
+        }
+        position = (position + 1) % windowSize;
+        recorded = Math.min(recorded + 1, windowSize);
+
+        if (recorded >= minimumCalls && failureCount * 100 >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    private void open() {
+        log.warn("AI circuit opened ({} of {} recent calls failed)", failureCount, recorded);
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        opened.incrementAndGet();
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        position = 0;
+        recorded = 0;
+        failureCount = 0;
+        Arrays.fill(failures, false);
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.aiapp.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.exception.RateLimitExceededException;
+
+/**
+ * Admission control for the AI endpoints: one token bucket per user, sized by
+ * the user's role, plus a global bucket sized to the upstream quota. A call
+ * must get a token from both.
+ *
+ * Each bucket is a single {@link AtomicLong} holding the time at which it
+ * will be full again (the GCRA formulation of a token bucket), so taking a
+ * token is one CAS with no locks and no refill thread.
+ */
+@Component
+public class AiRateLimiter {
+
+    private final boolean enabled;
+    private final Limit userLimit;
+    private final Limit adminLimit;
+    private final Bucket global;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final AtomicLong rejectedByUser = new AtomicLong();
+    private final AtomicLong rejectedByGlobal = new AtomicLong();
+    private final AtomicLong rejectedTooLarge = new AtomicLong();
+
+    @Autowired
+    public AiRateLimiter(
+            @Value("${ai.rate-limit.enabled:true}") boolean enabled,
+            @Value("${ai.rate-limit.user.per-minute:20}") int userPerMinute,
+            @Value("${ai.rate-limit.user.burst:10}") int userBurst,
+            @Value("${ai.rate-limit.admin.per-minute:120}") int adminPerMinute,
+            @Value("${ai.rate-limit.admin.burst:30}") int adminBurst,
+            @Value("${ai.rate-limit.global.per-minute:30}") int globalPerMinute,
+            @Value("${ai.rate-limit.global.burst:30}") int globalBurst) {
+        this(enabled, new Limit(userPerMinute, userBurst), new Limit(adminPerMinute, adminBurst),
+                new Limit(globalPerMinute, globalBurst), System::nanoTime);
+    }
+
+    AiRateLimiter(boolean enabled, Limit userLimit, Limit adminLimit, Limit globalLimit, LongSupplier clock) {
+        this.enabled = enabled;
+        this.userLimit = userLimit;
+        this.adminLimit = adminLimit;
+        this.global = new Bucket(globalLimit, clock.getAsLong());
+        this.clock = clock;
+    }
+
+    /**
+     * Takes {@code permits} tokens (one per upstream call) for the user, or
+     * throws {@link RateLimitExceededException} saying when to retry. A
+     * request needing more calls than the user's or the global burst could
+     * never be admitted, and is refused outright, so the client splits it.
+     */
+    public void acquire(Long userId, String role, int permits) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        Limit limit = "ADMIN".equalsIgnoreCase(role) ? adminLimit : userLimit;
+        int maxPermits = Math.min(limit.burst(), global.limit.burst());
+        if (permits > maxPermits) {
+            rejectedTooLarge.incrementAndGet();
+            throw new RuntimeException("Request needs " + permits + " AI calls, more than the "
+                    + maxPermits + " allowed at once; please split it");
+        }
+
+        Bucket bucket = buckets.computeIfAbsent(userId, id -> new Bucket(limit, now));
+
+        long waitNanos = bucket.tryTake(permits, now);
+        if (waitNanos > 0) {
+            rejectedByUser.incrementAndGet();
+            throw new RateLimitExceededException("Rate limit exceeded, please slow down", toRetrySeconds(waitNanos));
+        }
+
+        waitNanos = global.tryTake(permits, now);
+        if (waitNanos > 0) {
+            // the call never happens, so it should not count against the user
+            bucket.giveBack(permits);
+            rejectedByGlobal.incrementAndGet();
+            throw new RateLimitExceededException("AI service is at capacity, please try again later",
+                    toRetrySeconds(waitNanos));
+        }
+
+        admitted.increment();
+    }
+
+    /**
+     * Drops buckets that have refilled completely; a new one is created on
+     * the user's next call with the same result.
+     */
+    @Scheduled(fixedDelayString = "${ai.rate-limit.cleanup-interval-ms:60000}")
+    public void evictIdle() {
+        long now = clock.getAsLong();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    public Map<String, Object> stats() {
+        long now = clock.getAsLong();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("userLimit", userLimit.describe());
+        stats.put("adminLimit", adminLimit.describe());
+        stats.put("globalLimit", global.limit.describe());
+        stats.put("globalAvailable", global.available(now));
+        stats.put("trackedUsers", buckets.size());
+        stats.put("admitted", admitted.sum());
+        stats.put("rejectedByUser", rejectedByUser.get());
+        stats.put("rejectedByGlobal", rejectedByGlobal.get());
+        stats.put("rejectedTooLarge", rejectedTooLarge.get());
+        return stats;
+    }
+
+    private static long toRetrySeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Sustained rate and burst size of one bucket.
+     */
+    record Limit(int perMinute, int burst) {
+
+        long intervalNanos() {
+            return TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+        }
+
+        Map<String, Integer> describe() {
+            return Map.of("perMinute", perMinute, "burst", burst);
+        }
+    }
+
+    /**
+     * Token bucket stored as the instant it will be full again. Taking a
+     * token pushes that instant one interval later; a take is allowed while
+     * it stays within {@code burst} intervals of now.
+     */
+    private static final class Bucket {
+
+        final Limit limit;
+        final long intervalNanos;
+        final long capacityNanos;
+        final AtomicLong fullAt;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.intervalNanos = limit.intervalNanos();
+            this.capacityNanos = intervalNanos * Math.max(1, limit.burst());
+            this.fullAt = new AtomicLong(now);
+        }
+
+        /**
+         * @return 0 if the tokens were taken, otherwise how long to wait
+         */
+        long tryTake(int permits, long now) {
+            long cost = cost(permits);
+
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + cost;
+                long overflow = next - now - capacityNanos;
+
+                if (overflow > 0) {
+                    return overflow;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        void giveBack(int permits) {
+            fullAt.addAndGet(-cost(permits));
+        }
+
+        long cost(int permits) {
+            return intervalNanos * Math.max(1, permits);
+        }
+
+        boolean isFull(long now) {
+            return fullAt.get() <= now;
+        }
+
+        long available(long now) {
+            long used = Math.max(0, fullAt.get() - now);
+            return Math.max(0, capacityNanos - used) / intervalNanos;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.aiapp.service;
+
+import java.util.List;
+
+import com.example.aiapp.dto.AiRequestRef;
+import com.example.aiapp.entity.AiRequest;
+
+/**
+ * Notified by {@link AiRequestWriter} after AI requests are persisted or
+ * deleted, for components that keep derived state in sync incrementally.
+ */
+public interface AiRequestListener {
+
+    /**
+     * Called after a batch has been inserted; ids are already set.
+     */
+    void onRequestsCreated(List<AiRequest> requests);
+
+    void onRequestDeleted(AiRequestRef request);
+
+    /**
+     * Called after a set-based delete (e.g. by retention); one call per
+     * deleted row unless overridden.
+     */
+    default void onRequestsDeleted(List<? extends AiRequestRef> requests) {
+        requests.forEach(this::onRequestDeleted);
+    }
+}
@@ -0,0 +1,457 @@
+package com.example.aiapp.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.aiapp.dto.AiRequestRef;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.entity.CompressedTextConverter;
+import com.example.aiapp.exception.ServiceBusyException;
+import com.example.aiapp.repository.AiRequestRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind persistence for {@link AiRequest} rows.
+ *
+ * Requests are queued in memory and a background thread flushes them as one
+ * multi-row JDBC batch once {@code ai.writer.batch-size} rows are waiting or
+ * {@code ai.writer.flush-interval-ms} has passed. The insert bypasses
+ * Hibernate, whose IDENTITY generator disables insert batching; the database
+ * still assigns the auto-increment ids, which are read back from the batch's
+ * generated keys and set on each entity. Text columns are encoded with
+ * {@link CompressedTextConverter}, as Hibernate would.
+ *
+ * Each batch is inserted in one transaction, so a failed batch leaves no rows
+ * behind and can be retried: up to {@code ai.writer.max-attempts} times with
+ * a doubling backoff from {@code ai.writer.retry-backoff-ms} (e.g. through a
+ * database failover), then row by row, so that one bad row only loses itself.
+ *
+ * Deletes go through here as well, so that every {@link AiRequestListener}
+ * sees both sides of the row lifecycle.
+ */
+@Component
+public class AiRequestWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AiRequestWriter.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO ai_requests (input_text, action, output, user_id, created_at,"
+            + " prompt_tokens, completion_tokens, upstream_time_ms, latency_ms)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final long MAX_RETRY_BACKOFF_MS = 10_000;
+
+    private static final String RESTORE_SQL =
+            "INSERT INTO ai_requests (id, input_text, action, output, user_id, created_at,"
+            + " prompt_tokens, completion_tokens, upstream_time_ms, latency_ms)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * What to do when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** write the row synchronously on the calling thread */
+        CALLER_RUNS,
+        /** wait up to {@code ai.writer.offer-timeout-ms} for space, then write synchronously */
+        BLOCK,
+        /** fail the request */
+        REJECT
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AiRequestRepository aiRequestRepository;
+    private final ObjectProvider<AiRequestListener> listeners;
+    private final CompressedTextConverter compressedTextConverter;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<AiRequest> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long offerTimeoutMs;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+
+    private final Timer batchTimer;
+    private final DistributionSummary batchSizes;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public AiRequestWriter(
+            JdbcTemplate jdbcTemplate,
+            AiRequestRepository aiRequestRepository,
+            ObjectProvider<AiRequestListener> listeners,
+            CompressedTextConverter compressedTextConverter,
+            PlatformTransactionManager transactionManager,
+            @Value("${ai.writer.queue-capacity:10000}") int queueCapacity,
+            @Value("${ai.writer.batch-size:100}") int batchSize,
+            @Value("${ai.writer.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${ai.writer.overflow-policy:CALLER_RUNS}") OverflowPolicy overflowPolicy,
+            @Value("${ai.writer.offer-timeout-ms:50}") long offerTimeoutMs,
+            @Value("${ai.writer.max-attempts:6}") int maxAttempts,
+            @Value("${ai.writer.retry-backoff-ms:250}") long retryBackoffMs,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.aiRequestRepository = aiRequestRepository;
+        this.listeners = listeners;
+        this.compressedTextConverter = compressedTextConverter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+
+        this.batchTimer = Timer.builder("ai.persistence.batch")
+                .description("Time to insert one batch of AI requests")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("ai.persistence.batch.size")
+                .description("Rows per AI request insert batch")
+                .baseUnit("rows")
+                .register(meterRegistry);
+        Gauge.builder("ai.writer.queue.size", queue, BlockingQueue::size)
+                .description("AI requests waiting to be persisted")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::run, "ai-request-writer");
+        worker.start();
+    }
+
+    /**
+     * Stops the background loop and flushes everything still queued.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + 30_000);
+    }
+
+    /**
+     * Queues a request for persistence. If the queue is full, the configured
+     * {@link OverflowPolicy} decides whether to write inline or fail.
+     */
+    public void enqueue(AiRequest aiRequest) {
+        if (queue.offer(aiRequest)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case REJECT -> {
+                rejected.incrementAndGet();
+                throw new ServiceBusyException("Server is busy, please try again");
+            }
+            case BLOCK -> {
+                try {
+                    if (queue.offer(aiRequest, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                callerRuns.incrementAndGet();
+                writeBatch(List.of(aiRequest));
+            }
+            default -> {
+                callerRuns.incrementAndGet();
+                writeBatch(List.of(aiRequest));
+            }
+        }
+    }
+
+    /**
+     * Inserts the given requests as a single JDBC batch, in one transaction,
+     * on the calling thread and sets their generated ids.
+     */
+    public void writeBatch(List<AiRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        batchTimer.record(() -> transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        AiRequest r = requests.get(i);
+                        // the JPA converter does not see JDBC inserts; encode the same way
+                        ps.setString(1, compressedTextConverter.encode(r.getInputText()));
+                        ps.setString(2, r.getAction());
+                        ps.setString(3, compressedTextConverter.encode(r.getOutput()));
+                        ps.setLong(4, r.getUserId());
+                        ps.setTimestamp(5, Timestamp.valueOf(r.getCreatedAt()));
+                        ps.setObject(6, r.getPromptTokens(), Types.INTEGER);
+                        ps.setObject(7, r.getCompletionTokens(), Types.INTEGER);
+                        ps.setObject(8, r.getUpstreamTimeMs(), Types.INTEGER);
+                        ps.setObject(9, r.getLatencyMs(), Types.INTEGER);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return requests.size();
+                    }
+                },
+                keyHolder)));
+        batchSizes.record(requests.size());
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size() && i < requests.size(); i++) {
+            Object key = keys.get(i).values().iterator().next();
+            requests.get(i).setId(((Number) key).longValue());
+        }
+
+        written.addAndGet(requests.size());
+        batches.incrementAndGet();
+
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onRequestsCreated(requests);
+            } catch (RuntimeException e) {
+                log.warn("AI request listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        });
+    }
+
+    /**
+     * Deletes one request and notifies the listeners. Unknown ids are ignored.
+     */
+    public void delete(Long id) {
+        aiRequestRepository.findRefById(id).ifPresent(this::delete);
+    }
+
+    /**
+     * Deletes a request already loaded by the caller (e.g. for an ownership
+     * check) and notifies the listeners.
+     */
+    public void delete(AiRequestRef ref) {
+        aiRequestRepository.deleteById(ref.getId());
+
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onRequestDeleted(ref);
+            } catch (RuntimeException e) {
+                log.warn("AI request listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        });
+    }
+
+    /**
+     * Deletes the given requests with a single statement and notifies the
+     * listeners.
+     */
+    public void deleteAll(List<? extends AiRequestRef> refs) {
+        if (refs.isEmpty()) {
+            return;
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(refs.size(), "?"));
+        jdbcTemplate.update("DELETE FROM ai_requests WHERE id IN (" + placeholders + ")",
+                refs.stream().map(AiRequestRef::getId).toArray());
+
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onRequestsDeleted(refs);
+            } catch (RuntimeException e) {
+                log.warn("AI request listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        });
+    }
+
+    /**
+     * Re-inserts requests that were archived, under their original ids, as
+     * one JDBC batch on the calling thread, and notifies the listeners. The
+     * caller makes sure none of the ids is still present.
+     */
+    public void restore(List<AiRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(RESTORE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                AiRequest r = requests.get(i);
+                ps.setLong(1, r.getId());
+                ps.setString(2, compressedTextConverter.encode(r.getInputText()));
+                ps.setString(3, r.getAction());
+                ps.setString(4, compressedTextConverter.encode(r.getOutput()));
+                ps.setLong(5, r.getUserId());
+                ps.setTimestamp(6, Timestamp.valueOf(r.getCreatedAt()));
+                ps.setObject(7, r.getPromptTokens(), Types.INTEGER);
+                ps.setObject(8, r.getCompletionTokens(), Types.INTEGER);
+                ps.setObject(9, r.getUpstreamTimeMs(), Types.INTEGER);
+                ps.setObject(10, r.getLatencyMs(), Types.INTEGER);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return requests.size();
+            }
+        });
+
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onRequestsCreated(requests);
+            } catch (RuntimeException e) {
+                log.warn("AI request listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("remainingCapacity", queue.remainingCapacity());
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        stats.put("failed", failed.get());
+        stats.put("retried", retried.get());
+        stats.put("callerRuns", callerRuns.get());
+        stats.put("rejected", rejected.get());
+        stats.put("overflowPolicy", overflowPolicy.name());
+        return stats;
+    }
+
+    private void run() {
+        List<AiRequest> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                AiRequest first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    AiRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        // shutdown: write out whatever is still queued
+        while (!queue.isEmpty() || !batch.isEmpty()) {
+            queue.drainTo(batch, batchSize - batch.size());
+            flush(batch);
+        }
+    }
+
+    private void flush(List<AiRequest> batch) {
+        try {
+            writeWithRetry(batch);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes the batch, retrying with backoff while the failure may be
+     * transient; a batch that still fails (or has a bad row) is written row
+     * by row, and only the rows that fail on their own are dropped.
+     */
+    private void writeWithRetry(List<AiRequest> batch) {
+        long backoffMs = retryBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeBatch(batch);
+                return;
+            } catch (RuntimeException e) {
+                // a constraint violation fails the same way every time
+                if (e instanceof DataIntegrityViolationException || attempt >= maxAttempts) {
+                    log.warn("Failed to persist a batch of {} AI requests; writing them one by one",
+                            batch.size(), e);
+                    break;
+                }
+                retried.incrementAndGet();
+                log.warn("Failed to persist a batch of {} AI requests (attempt {} of {}), retrying in {} ms: {}",
+                        batch.size(), attempt, maxAttempts, backoffMs, e.getMessage());
+                if (!sleep(backoffMs)) {
+                    break;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+            }
+        }
+
+        for (AiRequest request : batch) {
+            try {
+                writeBatch(List.of(request));
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("Failed to persist AI request of user {} ({})", request.getUserId(),
+                        request.getAction(), e);
+            }
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
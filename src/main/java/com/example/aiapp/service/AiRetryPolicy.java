@@ -0,0 +1,130 @@
+package com.example.aiapp.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Bounded retries for upstream AI calls. Only transient failures are retried:
+ * 429, 5xx and I/O errors such as timeouts. Waits use exponential backoff with
+ * full jitter (a random delay up to the current backoff), so clients that
+ * failed together do not retry together; a {@code Retry-After} from a 429 is
+ * honoured when it fits. No new attempt starts once
+ * {@code ai.retry.deadline-ms} has passed since the first.
+ */
+@Component
+public class AiRetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long deadlineMs;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public AiRetryPolicy(
+            @Value("${ai.retry.max-attempts:3}") int maxAttempts,
+            @Value("${ai.retry.base-delay-ms:200}") long baseDelayMs,
+            @Value("${ai.retry.max-delay-ms:2000}") long maxDelayMs,
+            @Value("${ai.retry.deadline-ms:45000}") long deadlineMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.deadlineMs = deadlineMs;
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        long start = System.nanoTime();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (!isRetryable(e) || attempt >= maxAttempts) {
+                    if (isRetryable(e)) {
+                        exhausted.incrementAndGet();
+                    }
+                    throw e;
+                }
+
+                long delayMs = delayFor(attempt, e);
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (elapsedMs + delayMs >= deadlineMs) {
+                    exhausted.incrementAndGet();
+                    throw e;
+                }
+
+                retries.incrementAndGet();
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("retries", retries.get());
+        stats.put("exhausted", exhausted.get());
+        return stats;
+    }
+
+    /**
+     * 429, 5xx and I/O failures are transient and worth another attempt.
+     */
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof RestClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return e instanceof ResourceAccessException;
+    }
+
+    /**
+     * Failures that reflect the upstream's health and should count towards
+     * opening the circuit. Same set as the retryable ones.
+     */
+    static boolean isUpstreamFailure(Throwable e) {
+        return isRetryable(e);
+    }
+
+    private long delayFor(int attempt, RuntimeException e) {
+        long retryAfterMs = retryAfterMs(e);
+        if (retryAfterMs > 0 && retryAfterMs <= maxDelayMs) {
+            return retryAfterMs;
+        }
+
+        long backoff = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    private static long retryAfterMs(RuntimeException e) {
+        if (!(e instanceof RestClientResponseException response) || response.getResponseHeaders() == null) {
+            return 0;
+        }
+
+        String value = response.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.aiapp.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.aiapp.dto.AiRequestRef;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.repository.AiRequestRepository;
+import com.example.aiapp.repository.UserRepository;
+
+/**
+ * Dashboard analytics served from memory.
+ *
+ * Counters are updated incrementally as users and AI requests are created or
+ * deleted, so the admin dashboard does not scan {@code users} and
+ * {@code ai_requests} on every load. A scheduled reconcile rebuilds all
+ * counters from GROUP BY queries to correct any drift (e.g. writes from other
+ * instances, or increments racing the previous reconcile).
+ *
+ * Token usage and upstream latency are kept the same way, per action and per
+ * user and action, for the admin usage report and each user's own totals.
+ */
+@Service
+public class AnalyticsService implements AiRequestListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsService.class);
+
+    private final AiRequestRepository aiRequestRepository;
+    private final UserRepository userRepository;
+    private final UserEmailLookup userEmailLookup;
+    private final int dayRetention;
+    private final int hourRetention;
+    private final int topUsersLimit;
+
+    private volatile Counters counters = new Counters();
+    private volatile LocalDateTime lastReconciledAt;
+
+    public AnalyticsService(
+            AiRequestRepository aiRequestRepository,
+            UserRepository userRepository,
+            UserEmailLookup userEmailLookup,
+            @Value("${analytics.day-retention:30}") int dayRetention,
+            @Value("${analytics.hour-retention:24}") int hourRetention,
+            @Value("${analytics.top-users:10}") int topUsersLimit) {
+        this.aiRequestRepository = aiRequestRepository;
+        this.userRepository = userRepository;
+        this.userEmailLookup = userEmailLookup;
+        this.dayRetention = dayRetention;
+        this.hourRetention = hourRetention;
+        this.topUsersLimit = topUsersLimit;
+    }
+
+    // ================= USER EVENTS =================
+
+    public void onUserCreated(String role) {
+        counters.addUser(role, 1);
+    }
+
+    public void onUserDeleted(String role) {
+        counters.addUser(role, -1);
+    }
+
+    public void onUserRoleChanged(String oldRole, String newRole) {
+        Counters current = counters;
+        current.addUser(oldRole, -1);
+        current.addUser(newRole, 1);
+    }
+
+    // ================= REQUEST EVENTS =================
+
+    @Override
+    public void onRequestsCreated(List<AiRequest> requests) {
+        Counters current = counters;
+        for (AiRequest r : requests) {
+            current.addRequest(r.getAction(), r.getUserId(), r.getCreatedAt(), 1);
+            current.addUsage(r.getUserId(), r.getAction(), 1,
+                    value(r.getPromptTokens()), value(r.getCompletionTokens()),
+                    value(r.getLatencyMs()), r.getLatencyMs() == null ? 0 : 1);
+        }
+    }
+
+    @Override
+    public void onRequestDeleted(AiRequestRef request) {
+        Counters current = counters;
+        current.addRequest(request.getAction(), request.getUserId(), request.getCreatedAt(), -1);
+        current.addUsage(request.getUserId(), request.getAction(), -1,
+                -value(request.getPromptTokens()), -value(request.getCompletionTokens()),
+                -value(request.getLatencyMs()), request.getLatencyMs() == null ? 0 : -1);
+    }
+
+    // ================= RECONCILE =================
+
+    /**
+     * Rebuilds every counter from the database and swaps it in atomically.
+     */
+    @Scheduled(initialDelayString = "${analytics.reconcile-initial-delay-ms:0}",
+            fixedDelayString = "${analytics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Counters fresh = new Counters();
+
+            for (Object[] row : userRepository.countByRoleGrouped()) {
+                fresh.addUser((String) row[0], ((Number) row[1]).longValue());
+            }
+
+            for (Object[] row : aiRequestRepository.usageByUserAndAction()) {
+                Long userId = (Long) row[0];
+                String action = normalize((String) row[1]);
+                long count = toLong(row[2]);
+
+                fresh.totalRequests.add(count);
+                adder(fresh.requestsByAction, action).add(count);
+                adder(fresh.requestsByUser, userId).add(count);
+                fresh.addUsage(userId, action, count, toLong(row[3]), toLong(row[4]), toLong(row[5]), toLong(row[6]));
+            }
+
+            LocalDate firstDay = now.toLocalDate().minusDays(dayRetention - 1L);
+            for (Object[] row : aiRequestRepository.countByDaySince(firstDay.atStartOfDay())) {
+                LocalDate day = LocalDate.of(toInt(row[0]), toInt(row[1]), toInt(row[2]));
+                adder(fresh.requestsByDay, day).add(((Number) row[3]).longValue());
+            }
+
+            LocalDateTime firstHour = now.truncatedTo(ChronoUnit.HOURS).minusHours(hourRetention - 1L);
+            for (Object[] row : aiRequestRepository.countByHourSince(firstHour)) {
+                LocalDateTime hour = LocalDateTime.of(toInt(row[0]), toInt(row[1]), toInt(row[2]), toInt(row[3]), 0);
+                adder(fresh.requestsByHour, hour).add(((Number) row[4]).longValue());
+            }
+
+            counters = fresh;
+            lastReconciledAt = now;
+        } catch (RuntimeException e) {
+            log.warn("Analytics reconcile failed, keeping incremental counters", e);
+        }
+    }
+
+    // ================= READ =================
+
+    public Map<String, Object> getAnalytics() {
+        Counters current = counters;
+        LocalDateTime now = LocalDateTime.now();
+
+        long totalUsers = current.usersByRole.values().stream().mapToLong(LongAdder::sum).sum();
+        long totalAdmins = sum(current.usersByRole, "ADMIN");
+
+        Map<String, Long> byAction = new TreeMap<>();
+        current.requestsByAction.forEach((action, count) -> byAction.put(action, count.sum()));
+
+        Map<String, Long> perDay = new LinkedHashMap<>();
+        for (int i = dayRetention - 1; i >= 0; i--) {
+            LocalDate day = now.toLocalDate().minusDays(i);
+            perDay.put(day.toString(), sum(current.requestsByDay, day));
+        }
+
+        Map<String, Long> perHour = new LinkedHashMap<>();
+        LocalDateTime thisHour = now.truncatedTo(ChronoUnit.HOURS);
+        for (int i = hourRetention - 1; i >= 0; i--) {
+            LocalDateTime hour = thisHour.minusHours(i);
+            perHour.put(hour.toString(), sum(current.requestsByHour, hour));
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("totalUsers", totalUsers);
+        data.put("totalRequests", current.totalRequests.sum());
+        data.put("totalAdmins", totalAdmins);
+        data.put("totalNormalUsers", totalUsers - totalAdmins);
+        data.put("requestsByAction", byAction);
+        data.put("requestsPerDay", perDay);
+        data.put("requestsPerHour", perHour);
+        data.put("topUsers", topUsers(current));
+        data.put("lastReconciledAt", lastReconciledAt);
+
+        return data;
+    }
+
+    /**
+     * Token usage and upstream latency per action, and the heaviest users by
+     * total tokens.
+     */
+    public Map<String, Object> getUsage() {
+        Counters current = counters;
+
+        Usage total = new Usage();
+        Map<String, Object> byAction = new TreeMap<>();
+        current.usageByAction.forEach((action, usage) -> {
+            byAction.put(action, usage.toMap());
+            total.add(usage);
+        });
+
+        List<Map.Entry<Long, Usage>> top = current.usageByUser.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), sumOf(e.getValue())))
+                .filter(e -> e.getValue().totalTokens() > 0)
+                .sorted(Comparator.comparingLong((Map.Entry<Long, Usage> e) -> e.getValue().totalTokens())
+                        .reversed())
+                .limit(topUsersLimit)
+                .toList();
+
+        Map<Long, String> emails = userEmailLookup.emailsFor(top.stream().map(Map.Entry::getKey).toList());
+
+        List<Map<String, Object>> users = new ArrayList<>();
+        for (Map.Entry<Long, Usage> entry : top) {
+            Map<String, Object> user = entry.getValue().toMap();
+            user.put("userId", entry.getKey());
+            user.put("email", emails.getOrDefault(entry.getKey(), "Unknown"));
+            users.add(user);
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("total", total.toMap());
+        data.put("byAction", byAction);
+        data.put("topUsers", users);
+        data.put("lastReconciledAt", lastReconciledAt);
+        return data;
+    }
+
+    /**
+     * One user's token usage and upstream latency, in total and per action.
+     */
+    public Map<String, Object> getUserUsage(Long userId) {
+        ConcurrentHashMap<String, Usage> perAction = counters.usageByUser.get(userId);
+
+        Map<String, Object> byAction = new TreeMap<>();
+        if (perAction != null) {
+            perAction.forEach((action, usage) -> byAction.put(action, usage.toMap()));
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("total", (perAction == null ? new Usage() : sumOf(perAction)).toMap());
+        data.put("byAction", byAction);
+        return data;
+    }
+
+    private static Usage sumOf(Map<String, Usage> perAction) {
+        Usage sum = new Usage();
+        perAction.values().forEach(sum::add);
+        return sum;
+    }
+
+    private List<Map<String, Object>> topUsers(Counters current) {
+        List<Map.Entry<Long, Long>> top = current.requestsByUser.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(topUsersLimit)
+                .toList();
+
+        Map<Long, String> emails = userEmailLookup.emailsFor(top.stream().map(Map.Entry::getKey).toList());
+
+        List<Map<String, Object>> users = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : top) {
+            Map<String, Object> user = new HashMap<>();
+            user.put("userId", entry.getKey());
+            user.put("email", emails.getOrDefault(entry.getKey(), "Unknown"));
+            user.put("requests", entry.getValue());
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "UNKNOWN" : value.toUpperCase();
+    }
+
+    private static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    // SUM over only NULLs is NULL
+    private static long toLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static long value(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static <K> LongAdder adder(ConcurrentHashMap<K, LongAdder> map, K key) {
+        return map.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    private static <K> long sum(Map<K, LongAdder> map, K key) {
+        LongAdder adder = map.get(key);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * One generation of counters; replaced wholesale on reconcile.
+     */
+    private static final class Counters {
+        final ConcurrentHashMap<String, LongAdder> usersByRole = new ConcurrentHashMap<>();
+        final LongAdder totalRequests = new LongAdder();
+        final ConcurrentHashMap<String, LongAdder> requestsByAction = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, LongAdder> requestsByUser = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<LocalDate, LongAdder> requestsByDay = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<LocalDateTime, LongAdder> requestsByHour = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, Usage> usageByAction = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, ConcurrentHashMap<String, Usage>> usageByUser = new ConcurrentHashMap<>();
+
+        void addUser(String role, long delta) {
+            adder(usersByRole, normalize(role)).add(delta);
+        }
+
+        void addRequest(String action, Long userId, LocalDateTime createdAt, long delta) {
+            totalRequests.add(delta);
+            adder(requestsByAction, normalize(action)).add(delta);
+            if (userId != null) {
+                adder(requestsByUser, userId).add(delta);
+            }
+            if (createdAt != null) {
+                adder(requestsByDay, createdAt.toLocalDate()).add(delta);
+                adder(requestsByHour, createdAt.truncatedTo(ChronoUnit.HOURS)).add(delta);
+            }
+        }
+
+        void addUsage(Long userId, String action, long requests, long promptTokens, long completionTokens,
+                long latencyMs, long latencySamples) {
+            String key = normalize(action);
+            usageByAction.computeIfAbsent(key, k -> new Usage())
+                    .add(requests, promptTokens, completionTokens, latencyMs, latencySamples);
+            if (userId != null) {
+                usageByUser.computeIfAbsent(userId, k -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(key, k -> new Usage())
+                        .add(requests, promptTokens, completionTokens, latencyMs, latencySamples);
+            }
+        }
+    }
+
+    /**
+     * Running token and latency sums for one action or one user and action.
+     * Requests served from the cache carry no usage and no latency sample.
+     */
+    private static final class Usage {
+        final LongAdder requests = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder latencyMs = new LongAdder();
+        final LongAdder latencySamples = new LongAdder();
+
+        void add(long requests, long promptTokens, long completionTokens, long latencyMs, long latencySamples) {
+            this.requests.add(requests);
+            this.promptTokens.add(promptTokens);
+            this.completionTokens.add(completionTokens);
+            this.latencyMs.add(latencyMs);
+            this.latencySamples.add(latencySamples);
+        }
+
+        void add(Usage other) {
+            add(other.requests.sum(), other.promptTokens.sum(), other.completionTokens.sum(),
+                    other.latencyMs.sum(), other.latencySamples.sum());
+        }
+
+        long totalTokens() {
+            return promptTokens.sum() + completionTokens.sum();
+        }
+
+        Map<String, Object> toMap() {
+            long samples = latencySamples.sum();
+
+            Map<String, Object> map = new HashMap<>();
+            map.put("requests", requests.sum());
+            map.put("promptTokens", promptTokens.sum());
+            map.put("completionTokens", completionTokens.sum());
+            map.put("totalTokens", totalTokens());
+            map.put("avgLatencyMs", samples == 0 ? null : latencyMs.sum() / samples);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.aiapp.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.entity.AiRequest;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Local-disk archive of {@code ai_requests} rows removed by retention.
+ *
+ * Each archived batch is one gzipped NDJSON file (plain text, one row per
+ * line) under {@code <archive-dir>/<yyyy-MM-dd>/}, written to a temporary
+ * file, synced and atomically renamed into place, and only then recorded in
+ * {@code manifest.ndjson} together with the batch's id range, date range and
+ * users; readers only look at files in the manifest, and skip those whose
+ * ranges cannot match. A batch archived again after a crash (before its rows
+ * were deleted) is harmless: rows are deduplicated by id on read.
+ */
+@Component
+public class ArchiveStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveStore.class);
+
+    private static final String MANIFEST = "manifest.ndjson";
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * One manifest line: an archive file and what it can contain.
+     */
+    public record ArchiveFile(
+            String file,
+            long firstId,
+            long lastId,
+            int rows,
+            LocalDateTime oldest,
+            LocalDateTime newest,
+            Set<Long> userIds,
+            LocalDateTime archivedAt) {
+
+        boolean mayContain(HistoryExporter.Filter filter) {
+            if (filter.userId() != null && !userIds.contains(filter.userId())) {
+                return false;
+            }
+            if (filter.from() != null && newest.isBefore(filter.from().atStartOfDay())) {
+                return false;
+            }
+            return filter.to() == null || oldest.isBefore(filter.to().plusDays(1).atStartOfDay());
+        }
+    }
+
+    private final JsonMapper jsonMapper;
+    private final Path root;
+
+    // appends to the manifest are serialized; files themselves never change
+    private final Object writeLock = new Object();
+
+    public ArchiveStore(JsonMapper jsonMapper, @Value("${ai.retention.archive-dir:archive}") String archiveDir) {
+        this.jsonMapper = jsonMapper;
+        this.root = Path.of(archiveDir).toAbsolutePath();
+    }
+
+    /**
+     * Writes the rows (with their text decoded) to a new archive file and
+     * records it in the manifest. Returns once both are on disk.
+     */
+    public ArchiveFile write(List<AiRequest> rows) throws IOException {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to archive");
+        }
+
+        long firstId = Long.MAX_VALUE;
+        long lastId = Long.MIN_VALUE;
+        LocalDateTime oldest = null;
+        LocalDateTime newest = null;
+        Set<Long> userIds = new TreeSet<>();
+        for (AiRequest row : rows) {
+            firstId = Math.min(firstId, row.getId());
+            lastId = Math.max(lastId, row.getId());
+            oldest = oldest == null || row.getCreatedAt().isBefore(oldest) ? row.getCreatedAt() : oldest;
+            newest = newest == null || row.getCreatedAt().isAfter(newest) ? row.getCreatedAt() : newest;
+            userIds.add(row.getUserId());
+        }
+
+        LocalDateTime archivedAt = LocalDateTime.now();
+        // the timestamp keeps a re-archived range (after a restore) from clashing
+        String file = archivedAt.toLocalDate() + "/ai_requests-" + firstId + "-" + lastId
+                + "-" + System.currentTimeMillis() + ".ndjson.gz";
+        Path target = root.resolve(file);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.getParent());
+
+        try (OutputStream out = Files.newOutputStream(tmp);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(out, BUFFER_BYTES), StandardCharsets.UTF_8), BUFFER_BYTES)) {
+            writeRows(rows, writer);
+        }
+        sync(tmp);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        ArchiveFile entry = new ArchiveFile(file, firstId, lastId, rows.size(), oldest, newest, userIds, archivedAt);
+        synchronized (writeLock) {
+            Path manifest = root.resolve(MANIFEST);
+            try (FileChannel channel = FileChannel.open(manifest,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                String line = jsonMapper.writeValueAsString(entry) + "\n";
+                long size = channel.size();
+                if (size > 0) {
+                    // finish a line torn by a crash so it does not swallow this one
+                    ByteBuffer last = ByteBuffer.allocate(1);
+                    channel.read(last, size - 1);
+                    if (last.get(0) != '\n') {
+                        line = "\n" + line;
+                    }
+                }
+                channel.write(StandardCharsets.UTF_8.encode(line), size);
+                channel.force(false);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * The files in the manifest, oldest archive first.
+     */
+    public List<ArchiveFile> files() throws IOException {
+        Path manifest = root.resolve(MANIFEST);
+        List<ArchiveFile> files = new ArrayList<>();
+        if (!Files.exists(manifest)) {
+            return files;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    files.add(jsonMapper.readValue(line, ArchiveFile.class));
+                } catch (RuntimeException e) {
+                    // a torn last line from a crash mid-append; its file was never referenced
+                    log.warn("Skipping unreadable archive manifest line: {}", e.getMessage());
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Passes every archived row matching the filter to {@code sink}, once per
+     * id, in archive order.
+     */
+    public void read(HistoryExporter.Filter filter, Consumer<AiRequest> sink) throws IOException {
+        Set<Long> seen = new HashSet<>();
+        for (ArchiveFile entry : files()) {
+            if (!entry.mayContain(filter)) {
+                continue;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(root.resolve(entry.file())), BUFFER_BYTES),
+                    StandardCharsets.UTF_8), BUFFER_BYTES)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    AiRequest row = jsonMapper.readValue(line, AiRequest.class);
+                    if (matches(row, filter) && seen.add(row.getId())) {
+                        sink.accept(row);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the archived rows matching the filter to {@code out} as NDJSON,
+     * optionally gzipped, and closes it.
+     */
+    public void export(HistoryExporter.Filter filter, boolean gzip, OutputStream out) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : out, StandardCharsets.UTF_8), BUFFER_BYTES)) {
+            ObjectWriter rowWriter = jsonMapper.writer().withRootValueSeparator("\n");
+            JsonGenerator generator = rowWriter.createGenerator(writer);
+            read(filter, row -> rowWriter.writeValue(generator, row));
+            generator.flush();
+            writer.write('\n');
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("directory", root.toString());
+        try {
+            List<ArchiveFile> files = files();
+            stats.put("files", files.size());
+            stats.put("rows", files.stream().mapToLong(ArchiveFile::rows).sum());
+            stats.put("oldest", files.stream().map(ArchiveFile::oldest).min(LocalDateTime::compareTo).orElse(null));
+            stats.put("newest", files.stream().map(ArchiveFile::newest).max(LocalDateTime::compareTo).orElse(null));
+        } catch (IOException e) {
+            stats.put("error", e.getMessage());
+        }
+        return stats;
+    }
+
+    private void writeRows(List<AiRequest> rows, Writer writer) throws IOException {
+        for (AiRequest row : rows) {
+            writer.write(jsonMapper.writeValueAsString(row));
+            writer.write('\n');
+        }
+    }
+
+    private static boolean matches(AiRequest row, HistoryExporter.Filter filter) {
+        if (filter.userId() != null && !filter.userId().equals(row.getUserId())) {
+            return false;
+        }
+        if (filter.action() != null && !filter.action().isBlank() && !filter.action().equals(row.getAction())) {
+            return false;
+        }
+        LocalDate day = row.getCreatedAt().toLocalDate();
+        return (filter.from() == null || !day.isBefore(filter.from()))
+                && (filter.to() == null || !day.isAfter(filter.to()));
+    }
+
+    private static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+}
@@ -1,32 +1,92 @@
 package com.example.aiapp.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.http.*;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.RestClientException;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import com.example.aiapp.client.ChatCompletionRequest;
+import com.example.aiapp.client.ChatCompletionResponse;
+import com.example.aiapp.client.StreamedCompletion;
+import com.example.aiapp.dto.AiBatchResultDto;
 import com.example.aiapp.dto.AiHistoryDto;
+import com.example.aiapp.dto.AiHistorySummaryDto;
+import com.example.aiapp.dto.AiRequestDto;
+import com.example.aiapp.dto.AiRequestRef;
+import com.example.aiapp.dto.CursorPageDto;
 import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.exception.UpstreamUnavailableException;
 import com.example.aiapp.repository.AiRequestRepository;
+import com.example.aiapp.security.AuthenticatedUser;
 
 @Service
 public class GeminiService {
 
-    private static final String GROQ_URL = "https://api.groq.com/openai/v1/chat/completions";
+    private static final String EMPTY_RESPONSE = "AI service returned an empty response.";
+
+    private static final String UNAVAILABLE = "AI service unavailable. Please try again later.";
 
     private final AiRequestRepository aiRequestRepository;
 
-    @Value("${groq.api.key}")
-    private String apiKey;
+    private final ResponseCache responseCache;
+
+    private final RequestCoalescer requestCoalescer;
+
+    private final AiRequestWriter aiRequestWriter;
+
+    private final AiBulkhead aiBulkhead;
+
+    private final AiCircuitBreaker aiCircuitBreaker;
+
+    private final AiRetryPolicy aiRetryPolicy;
+
+    private final UpstreamPool upstreamPool;
+
+    private final AsyncTaskExecutor aiBatchExecutor;
 
-    public GeminiService(AiRequestRepository aiRequestRepository) {
+    private final LongInputSummarizer longInputSummarizer;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.batch.max-items:500}")
+    private int batchMaxItems;
+
+    @Value("${ai.batch.parallelism:8}")
+    private int batchParallelism;
+
+    public GeminiService(AiRequestRepository aiRequestRepository, ResponseCache responseCache,
+            RequestCoalescer requestCoalescer, AiRequestWriter aiRequestWriter, AiBulkhead aiBulkhead,
+            AiCircuitBreaker aiCircuitBreaker, AiRetryPolicy aiRetryPolicy,
+            UpstreamPool upstreamPool, @Qualifier("aiBatchExecutor") AsyncTaskExecutor aiBatchExecutor,
+            LongInputSummarizer longInputSummarizer, MeterRegistry meterRegistry) {
         this.aiRequestRepository = aiRequestRepository;
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
+        this.aiRequestWriter = aiRequestWriter;
+        this.aiBulkhead = aiBulkhead;
+        this.aiCircuitBreaker = aiCircuitBreaker;
+        this.aiRetryPolicy = aiRetryPolicy;
+        this.upstreamPool = upstreamPool;
+        this.aiBatchExecutor = aiBatchExecutor;
+        this.longInputSummarizer = longInputSummarizer;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
@@ -39,16 +99,72 @@ public class GeminiService {
      */
     public Page<AiHistoryDto> getHistory(int page, int size, Long userId) {
         return aiRequestRepository.findAllByUserIdOrderByCreatedAtDesc(userId, PageRequest.of(page, size))
-                .map(entity -> new AiHistoryDto(
-                        entity.getId(),
-                        entity.getInputText(),
-                        entity.getOutput(),
-                        entity.getCreatedAt(),
-                        entity.getAction()));
+                .map(GeminiService::toHistoryDto);
+    }
+
+    /**
+     * Returns a page of the user's history using keyset pagination. Unlike
+     * {@link #getHistory(int, int, Long)}, the cost does not grow with how far
+     * the user has scrolled.
+     *
+     * @param cursor the {@code next} value of the previous page, or null for the first page
+     * @param size   number of records per page
+     */
+    public CursorPageDto<AiHistoryDto> getHistoryPage(Long userId, String cursor, int size) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+
+        List<AiRequest> rows = position == null
+                ? aiRequestRepository.findFirstPageByUserId(userId, KeysetCursor.probeLimit(size))
+                : aiRequestRepository.findPageByUserIdBefore(
+                        userId, position.createdAt(), position.id(), KeysetCursor.probeLimit(size));
+
+        return KeysetCursor.page(rows, size, GeminiService::toHistoryDto);
+    }
+
+    /**
+     * Returns a page of history cards with short previews instead of full text.
+     */
+    public Page<AiHistorySummaryDto> getHistorySummaries(int page, int size, Long userId) {
+        return aiRequestRepository.findSummariesByUserId(userId, PageRequest.of(page, size));
+    }
+
+    /**
+     * Returns the full text of one history entry owned by the user.
+     */
+    public AiHistoryDto getHistoryEntry(Long id, Long userId) {
+        AiRequest entity = aiRequestRepository.findByIdAndUserId(id, userId)
+                .orElseThrow(() -> new RuntimeException("History entry not found"));
+
+        return toHistoryDto(entity);
     }
 
-    public void deleteHistory(Long id) {
-        aiRequestRepository.deleteById(id);
+    static AiHistoryDto toHistoryDto(AiRequest entity) {
+        return new AiHistoryDto(
+                entity.getId(),
+                entity.getInputText(),
+                entity.getOutput(),
+                entity.getCreatedAt(),
+                entity.getAction(),
+                entity.getPromptTokens(),
+                entity.getCompletionTokens(),
+                entity.getLatencyMs());
+    }
+
+    /**
+     * Deletes a history entry if it belongs to the given user (admins may
+     * delete any entry). Unknown ids are ignored.
+     */
+    public void deleteHistory(Long id, AuthenticatedUser user) {
+        AiRequestRef ref = aiRequestRepository.findRefById(id).orElse(null);
+        if (ref == null) {
+            return;
+        }
+
+        if (!ref.getUserId().equals(user.id()) && !user.isAdmin()) {
+            throw new AccessDeniedException("Access denied");
+        }
+
+        aiRequestWriter.delete(ref);
     }
 
     /**
@@ -60,25 +176,237 @@ public class GeminiService {
      * @return a map containing the key "output" with the AI-generated result
      */
     public Map<String, String> process(String text, String action, Long userId) {
-        String prompt = buildPrompt(text, action);
-        String output = callGroqApi(prompt);
+        return process(text, action, userId, false);
+    }
+
+    /**
+     * Same as {@link #process(String, String, Long)}, but lets the caller skip
+     * the response cache. A cache hit avoids the upstream call, and concurrent
+     * identical requests share a single upstream call; every caller's request
+     * is still recorded in history. A failed upstream call throws
+     * {@link UpstreamUnavailableException} and records nothing.
+     *
+     * @param bypassCache when true, always call the upstream and refresh the cache
+     */
+    public Map<String, String> process(String text, String action, Long userId, boolean bypassCache) {
+        Generation generation = generateOrFail(text, action, bypassCache);
+
+        saveRequest(text, action, userId, generation);
+
+        return Map.of("output", generation.output);
+    }
+
+    /**
+     * Processes many items for one user. Items are sent upstream with at most
+     * {@code ai.batch.parallelism} in flight, results come back in input order
+     * with per-item errors, and all successful items are persisted in a single
+     * batched insert.
+     *
+     * @param items  the texts and actions to process
+     * @param userId the ID of the user making the request
+     * @return one result per item, in input order
+     */
+    public List<AiBatchResultDto> processBatch(List<AiRequestDto> items, Long userId, boolean bypassCache) {
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("Batch must contain at least one item");
+        }
+        if (items.size() > batchMaxItems) {
+            throw new RuntimeException("Batch cannot contain more than " + batchMaxItems + " items");
+        }
+
+        Semaphore window = new Semaphore(batchParallelism);
+        List<CompletableFuture<BatchItemOutcome>> futures = new ArrayList<>(items.size());
+
+        for (int i = 0; i < items.size(); i++) {
+            int index = i;
+            AiRequestDto item = items.get(i);
+
+            window.acquireUninterruptibly();
+            CompletableFuture<BatchItemOutcome> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> processBatchItem(index, item, bypassCache),
+                        aiBatchExecutor);
+            } catch (RuntimeException e) {
+                window.release();
+                throw e;
+            }
+            futures.add(future.whenComplete((result, ex) -> window.release()));
+        }
+
+        List<AiBatchResultDto> results = new ArrayList<>(items.size());
+        List<AiRequest> rows = new ArrayList<>(items.size());
+
+        for (int i = 0; i < futures.size(); i++) {
+            BatchItemOutcome outcome = futures.get(i).join();
+            results.add(outcome.result());
+
+            if (outcome.generation() != null) {
+                rows.add(newRequest(items.get(i).getText(), outcome.action(), userId, outcome.generation()));
+            }
+        }
+
+        aiRequestWriter.writeBatch(rows);
+
+        return results;
+    }
+
+    // action is the one the item was processed (and must be recorded) as
+    private record BatchItemOutcome(AiBatchResultDto result, String action, Generation generation) {
+    }
+
+    private BatchItemOutcome processBatchItem(int index, AiRequestDto item, boolean bypassCache) {
+        if (item == null || item.getText() == null || item.getText().isBlank()) {
+            return new BatchItemOutcome(AiBatchResultDto.failure(index, "Text is required"), null, null);
+        }
+
+        String action = item.getAction() == null ? "EXPLAIN" : item.getAction();
+
+        try {
+            Generation generation = generateOrFail(item.getText(), action, bypassCache);
+            return new BatchItemOutcome(AiBatchResultDto.success(index, generation.output), action, generation);
+        } catch (RuntimeException e) {
+            return new BatchItemOutcome(AiBatchResultDto.failure(index, e.getMessage()), action, null);
+        }
+    }
+
+    /**
+     * {@link #generate} with upstream errors (HTTP or I/O) reported as
+     * {@link UpstreamUnavailableException}, without exposing their details.
+     */
+    private Generation generateOrFail(String text, String action, boolean bypassCache) {
+        try {
+            return generate(text, action, bypassCache);
+        } catch (RestClientException e) {
+            throw new UpstreamUnavailableException(UNAVAILABLE, e);
+        }
+    }
+
+    /**
+     * Produces the output for a prompt: from the response cache if possible,
+     * otherwise from the upstream, with identical in-flight prompts sharing a
+     * single call. Long inputs go through {@link LongInputSummarizer}.
+     */
+    private Generation generate(String text, String action, boolean bypassCache) {
+        String cacheKey = ResponseCache.key(upstreamPool.modelKey(), action, text);
+        String cached = bypassCache ? null : responseCache.get(cacheKey);
+
+        if (cached != null) {
+            return Generation.cached(cached);
+        }
+
+        // identical prompts already in flight share one upstream call
+        return requestCoalescer.execute(cacheKey, () -> {
+            Generation fresh = longInputSummarizer.applies(text, action)
+                    ? longInputSummarizer.summarize(text, action,
+                            prompt -> callUpstream(prompt, action),
+                            prompt -> callUpstream(prompt, action),
+                            null)
+                    : callUpstream(buildPrompt(text, action), action);
+
+            responseCache.put(cacheKey, fresh.output);
+            return fresh;
+        });
+    }
+
+    /**
+     * Number of upstream calls the input will take, for rate limiting: more
+     * than one for inputs handled by {@link LongInputSummarizer}.
+     */
+    public int upstreamCalls(String text, String action) {
+        return longInputSummarizer.upstreamCalls(text, action);
+    }
+
+    /**
+     * One blocking upstream call with the full resilience stack. The circuit
+     * breaker sits outside the bulkhead so that an open circuit fails fast
+     * instead of queueing for a permit.
+     */
+    private Generation callUpstream(String prompt, String action) {
+        return aiCircuitBreaker.execute(() -> aiBulkhead.execute(
+                () -> aiRetryPolicy.execute(() -> callGroqApi(prompt, action))));
+    }
+
+    /**
+     * One streaming upstream call, behind the circuit breaker and bulkhead.
+     */
+    private Generation streamUpstream(String prompt, String action, Consumer<String> onToken) {
+        return aiCircuitBreaker.execute(() -> aiBulkhead.execute(
+                () -> streamGroqApi(prompt, action, onToken)));
+    }
+
+    /**
+     * Streaming variant of {@link #process(String, String, Long, boolean)}.
+     * Tokens are handed to {@code onToken} as the upstream produces them; once
+     * the completion finishes, the assembled output is persisted exactly like a
+     * blocking request. A failed stream is not persisted. Streams are not
+     * retried, since tokens may already have reached the client.
+     *
+     * @param onToken receives each content fragment in arrival order
+     * @return the full AI-generated output
+     */
+    public String processStream(String text, String action, Long userId, boolean bypassCache,
+            Consumer<String> onToken) {
+        return processStream(text, action, userId, bypassCache, onToken, null);
+    }
+
+    /**
+     * Same as {@link #processStream(String, String, Long, boolean, Consumer)};
+     * for long inputs, {@code onProgress} is told as each part is condensed,
+     * and only the final combining call is streamed.
+     *
+     * @param onProgress may be null
+     */
+    public String processStream(String text, String action, Long userId, boolean bypassCache,
+            Consumer<String> onToken, LongInputSummarizer.ProgressListener onProgress) {
+        String cacheKey = ResponseCache.key(upstreamPool.modelKey(), action, text);
+        String cached = bypassCache ? null : responseCache.get(cacheKey);
+        Generation generation;
+
+        if (cached != null) {
+            onToken.accept(cached);
+            generation = Generation.cached(cached);
+        } else {
+            try {
+                generation = longInputSummarizer.applies(text, action)
+                        ? longInputSummarizer.summarize(text, action,
+                                prompt -> callUpstream(prompt, action),
+                                prompt -> streamUpstream(prompt, action, onToken),
+                                onProgress)
+                        : streamUpstream(buildPrompt(text, action), action, onToken);
+            } catch (RestClientException e) {
+                throw new UpstreamUnavailableException(UNAVAILABLE, e);
+            }
+
+            if (generation.output.isEmpty()) {
+                throw new UpstreamUnavailableException(EMPTY_RESPONSE, 0);
+            }
+            responseCache.put(cacheKey, generation.output);
+        }
+
+        saveRequest(text, action, userId, generation);
+
+        return generation.output;
+    }
 
+    private void saveRequest(String text, String action, Long userId, Generation generation) {
+        // persisted off the request thread by the write-behind batcher
+        aiRequestWriter.enqueue(newRequest(text, action, userId, generation));
+    }
+
+    private AiRequest newRequest(String text, String action, Long userId, Generation generation) {
         AiRequest aiRequest = new AiRequest();
         aiRequest.setInputText(text);
         aiRequest.setAction(action);
-        aiRequest.setOutput(output);
         aiRequest.setUserId(userId);
         aiRequest.setCreatedAt(LocalDateTime.now());
-
-        aiRequestRepository.save(aiRequest);
-
-        return Map.of("output", output);
+        generation.applyTo(aiRequest);
+        return aiRequest;
     }
 
     /**
      * Builds a prompt string tailored to the requested action.
      */
-    private String buildPrompt(String text, String action) {
+    static String buildPrompt(String text, String action) {
         return switch (action.toUpperCase()) {
             case "SUMMARIZE" -> "Summarize this text:\n" + text;
             case "REWRITE" -> "Rewrite this professionally:\n" + text;
@@ -88,34 +416,123 @@ public class GeminiService {
     }
 
     /**
-     * Calls the Groq (LLaMA) chat-completion API and extracts the response content.
+     * Calls the chat-completion API on the best member of the upstream pool
+     * and extracts the response content. Upstream errors propagate so that
+     * the retry policy and circuit breaker can see them (each retry picks a
+     * member afresh); an empty completion is an error too. Each attempt is
+     * timed, and the prompt size recorded, per action and model.
      */
-    private String callGroqApi(String prompt) {
-        RestTemplate restTemplate = new RestTemplate();
+    private Generation callGroqApi(String prompt, String action) {
+        recordPrompt(prompt, action);
 
-        Map<String, Object> body = Map.of(
-                "model", "llama-3.1-8b-instant",
-                "messages", List.of(Map.of("role", "user", "content", prompt)));
+        return upstreamPool.execute(member -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            ChatCompletionResponse response;
+            try {
+                response = member.client().complete(ChatCompletionRequest.of(member.model(), prompt));
+            } catch (RuntimeException e) {
+                sample.stop(upstreamTimer("blocking", action, member, "error"));
+                throw e;
+            }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(apiKey);
+            boolean empty = response == null || response.content() == null || response.content().isEmpty();
+            long latencyNanos = sample.stop(upstreamTimer("blocking", action, member, empty ? "empty" : "success"));
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+            if (empty) {
+                throw new UpstreamUnavailableException(EMPTY_RESPONSE, 0);
+            }
+            return toGeneration(response.content(), response.reportedUsage(), action, member, latencyNanos);
+        });
+    }
 
-        try {
-            Map<?, ?> response = restTemplate.postForObject(GROQ_URL, entity, Map.class);
+    /**
+     * Calls the chat-completion API with {@code stream=true} on the best
+     * member of the upstream pool and forwards each content delta to
+     * {@code onToken}.
+     */
+    private Generation streamGroqApi(String prompt, String action, Consumer<String> onToken) {
+        recordPrompt(prompt, action);
 
-            if (response == null) {
-                return "AI service returned an empty response.";
+        return upstreamPool.execute(member -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            StreamedCompletion completion;
+            try {
+                completion = member.client().stream(ChatCompletionRequest.of(member.model(), prompt), onToken);
+            } catch (RuntimeException e) {
+                sample.stop(upstreamTimer("stream", action, member, "error"));
+                throw e;
             }
 
-            List<?> choices = (List<?>) response.get("choices");
-            Map<?, ?> message = (Map<?, ?>) ((Map<?, ?>) choices.get(0)).get("message");
-            return message.get("content").toString();
+            String outcome = completion.content().isEmpty() ? "empty" : "success";
+            long latencyNanos = sample.stop(upstreamTimer("stream", action, member, outcome));
+
+            return toGeneration(completion.content(), completion.usage(), action, member, latencyNanos);
+        });
+    }
+
+    private Generation toGeneration(String output, ChatCompletionResponse.Usage usage, String action,
+            UpstreamPool.Member member, long latencyNanos) {
+        recordUsage(usage, action, member.model());
+
+        return new Generation(output,
+                usage == null ? null : usage.promptTokens(),
+                usage == null ? null : usage.completionTokens(),
+                usage == null ? null : usage.totalTimeMs(),
+                (int) TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+    }
+
+    // ================= METRICS =================
+
+    private Timer upstreamTimer(String mode, String action, UpstreamPool.Member member, String outcome) {
+        return Timer.builder("ai.upstream.latency")
+                .description("Latency of one upstream chat-completion attempt")
+                .tag("mode", mode)
+                .tag("action", metricAction(action))
+                .tag("model", member.model())
+                .tag("upstream", member.name())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void recordPrompt(String prompt, String action) {
+        DistributionSummary.builder("ai.prompt.chars")
+                .description("Prompt size in characters")
+                .baseUnit("characters")
+                .tag("action", metricAction(action))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(prompt.length());
+    }
 
-        } catch (Exception e) {
-            return "AI service unavailable. Please try again later.";
+    private void recordUsage(ChatCompletionResponse.Usage usage, String action, String model) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.promptTokens() != null) {
+            tokenSummary("ai.prompt.tokens", action, model).record(usage.promptTokens());
         }
+        if (usage.completionTokens() != null) {
+            tokenSummary("ai.completion.tokens", action, model).record(usage.completionTokens());
+        }
+    }
+
+    private DistributionSummary tokenSummary(String name, String action, String model) {
+        return DistributionSummary.builder(name)
+                .description("Tokens per upstream call, as reported by the upstream")
+                .baseUnit("tokens")
+                .tag("action", metricAction(action))
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // bounded tag values: unknown actions are prompted as EXPLAIN anyway
+    private static String metricAction(String action) {
+        String upper = action == null ? "EXPLAIN" : action.toUpperCase();
+        return switch (upper) {
+            case "SUMMARIZE", "REWRITE", "EXPLAIN" -> upper;
+            default -> "OTHER";
+        };
     }
 }
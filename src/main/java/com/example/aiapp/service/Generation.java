@@ -0,0 +1,82 @@
+package com.example.aiapp.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.example.aiapp.entity.AiRequest;
+
+/**
+ * Output of one upstream call together with the usage it reported. The same
+ * instance is handed to every caller coalesced onto the call, but only the
+ * first request recorded from it is charged the tokens and latency, so usage
+ * totals match what the upstream actually billed.
+ */
+final class Generation {
+
+    final String output;
+    private final Integer promptTokens;
+    private final Integer completionTokens;
+    private final Integer upstreamTimeMs;
+    private final Integer latencyMs;
+    private final AtomicBoolean charged;
+
+    Generation(String output, Integer promptTokens, Integer completionTokens, Integer upstreamTimeMs,
+            Integer latencyMs) {
+        this.output = output;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.upstreamTimeMs = upstreamTimeMs;
+        this.latencyMs = latencyMs;
+        this.charged = new AtomicBoolean(false);
+    }
+
+    /**
+     * A response-cache hit: no upstream call, nothing to charge.
+     */
+    static Generation cached(String output) {
+        Generation generation = new Generation(output, null, null, null, null);
+        generation.charged.set(true);
+        return generation;
+    }
+
+    /**
+     * The result of several upstream calls (e.g. the parts of a long input):
+     * their reported usage added up, and the given wall-clock latency.
+     */
+    static Generation combine(String output, List<Generation> calls, long latencyNanos) {
+        return new Generation(output,
+                sum(calls, g -> g.promptTokens),
+                sum(calls, g -> g.completionTokens),
+                sum(calls, g -> g.upstreamTimeMs),
+                (int) TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+    }
+
+    /**
+     * Sets the output on the request, plus the usage if no other request has
+     * been charged for this call yet.
+     */
+    void applyTo(AiRequest request) {
+        request.setOutput(output);
+
+        if (charged.compareAndSet(false, true)) {
+            request.setPromptTokens(promptTokens);
+            request.setCompletionTokens(completionTokens);
+            request.setUpstreamTimeMs(upstreamTimeMs);
+            request.setLatencyMs(latencyMs);
+        }
+    }
+
+    // null if no call reported the value
+    private static Integer sum(List<Generation> calls, Function<Generation, Integer> field) {
+        Integer total = null;
+        for (Generation call : calls) {
+            Integer value = field.apply(call);
+            if (value != null) {
+                total = (total == null ? 0 : total) + value;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.aiapp.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.dto.AiRequestRef;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.entity.CompressedTextConverter;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Retention for {@code ai_requests}: rows older than the configured number of
+ * days are copied to the {@link ArchiveStore} and then deleted, so the table
+ * (and every index on it) stops growing without bound.
+ *
+ * The limit is {@code ai.retention.default-days}, overridden per role with
+ * {@code ai.retention.role-days} (e.g. {@code ADMIN:730,USER:365}) and per
+ * user with {@code ai.retention.user-days} (e.g. {@code 42:30}); 0 keeps a
+ * group's rows forever. Each group is walked in id order,
+ * {@code batch-size} rows at a time with a pause in between: a batch is
+ * archived (and synced to disk) first and then removed with one
+ * {@code DELETE ... WHERE id IN (...)}, so a run can be stopped or killed at
+ * any point and the next run simply carries on with what is left.
+ *
+ * Runs on {@code ai.retention.cron} when {@code ai.retention.enabled=true},
+ * or on demand from {@code POST /admin/retention/run}. Archived rows can be
+ * read back, or restored into the table, through {@code /admin/archive}.
+ */
+@Component
+public class HistoryArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryArchiver.class);
+
+    private static final String SELECT_SQL =
+            "SELECT r.id, r.user_id, r.action, r.created_at, r.input_text, r.output, r.prompt_tokens,"
+            + " r.completion_tokens, r.upstream_time_ms, r.latency_ms"
+            + " FROM ai_requests r LEFT JOIN users u ON u.id = r.user_id"
+            + " WHERE r.id > ? AND r.created_at < ? AND ";
+
+    /**
+     * One group of rows sharing a retention limit; {@code condition} is the
+     * extra SQL on {@code r} (the request) and {@code u} (its user).
+     */
+    record Rule(String name, int days, String condition, List<Object> params) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AiRequestWriter aiRequestWriter;
+    private final ArchiveStore archiveStore;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pauseMs;
+    private final List<Rule> rules;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+
+    private final AtomicLong archived = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong restored = new AtomicLong();
+    private volatile String currentRule;
+    private volatile long lastId;
+    private volatile String lastError;
+    private volatile boolean completed;
+    private volatile LocalDateTime lastRunAt;
+
+    public HistoryArchiver(
+            JdbcTemplate jdbcTemplate,
+            AiRequestWriter aiRequestWriter,
+            ArchiveStore archiveStore,
+            @Value("${ai.retention.enabled:false}") boolean enabled,
+            @Value("${ai.retention.default-days:0}") int defaultDays,
+            @Value("${ai.retention.role-days:}") String roleDays,
+            @Value("${ai.retention.user-days:}") String userDays,
+            @Value("${ai.retention.batch-size:1000}") int batchSize,
+            @Value("${ai.retention.pause-ms:200}") long pauseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.aiRequestWriter = aiRequestWriter;
+        this.archiveStore = archiveStore;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+        this.rules = rules(defaultDays, parseDays(roleDays), parseDays(userDays));
+    }
+
+    @Scheduled(cron = "${ai.retention.cron:0 30 3 * * *}")
+    void scheduledRun() {
+        if (enabled && !start()) {
+            log.info("Retention run skipped, the previous one is still in progress");
+        }
+    }
+
+    /**
+     * Starts a run in the background over every rule.
+     *
+     * @return false if a run is already in progress
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested = false;
+        completed = false;
+        lastError = null;
+        lastId = 0;
+        lastRunAt = LocalDateTime.now();
+        Thread worker = new Thread(this::run, "history-archiver");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    /**
+     * Asks a running archiver to stop after the current batch.
+     */
+    @PreDestroy
+    public void stop() {
+        stopRequested = true;
+    }
+
+    List<Rule> rules() {
+        return rules;
+    }
+
+    /**
+     * Archives and deletes one batch of the rule's rows created before
+     * {@code cutoff}, after {@code afterId}, on the calling thread.
+     *
+     * @return the id of the last row archived, or -1 if there were no more rows
+     */
+    long archiveBatch(Rule rule, LocalDateTime cutoff, long afterId) throws IOException {
+        List<Object> params = new ArrayList<>();
+        params.add(afterId);
+        params.add(Timestamp.valueOf(cutoff));
+        params.addAll(rule.params());
+        params.add(batchSize);
+
+        List<AiRequest> rows = jdbcTemplate.query(SELECT_SQL + rule.condition() + " ORDER BY r.id LIMIT ?",
+                (rs, i) -> row(rs), params.toArray());
+        if (rows.isEmpty()) {
+            return -1;
+        }
+
+        archiveStore.write(rows);
+        aiRequestWriter.deleteAll(rows.stream().map(HistoryArchiver::ref).toList());
+
+        archived.addAndGet(rows.size());
+        files.incrementAndGet();
+        return rows.get(rows.size() - 1).getId();
+    }
+
+    /**
+     * Copies archived rows matching the filter back into {@code ai_requests}
+     * under their original ids, skipping any that are still there. Restored
+     * rows stay in the archive, and are archived again by the next run unless
+     * the retention limit for them has changed.
+     */
+    public Map<String, Object> restore(HistoryExporter.Filter filter) throws IOException {
+        long[] matched = new long[1];
+        long[] inserted = new long[1];
+        List<AiRequest> batch = new ArrayList<>();
+        archiveStore.read(filter, row -> {
+            matched[0]++;
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                inserted[0] += restoreBatch(batch);
+                batch.clear();
+            }
+        });
+        inserted[0] += restoreBatch(batch);
+        restored.addAndGet(inserted[0]);
+        log.info("Restored {} of {} archived AI requests", inserted[0], matched[0]);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("matched", matched[0]);
+        response.put("restored", inserted[0]);
+        return response;
+    }
+
+    /**
+     * Streams the archived rows matching the filter as NDJSON.
+     */
+    public void export(HistoryExporter.Filter filter, boolean gzip, OutputStream out) throws IOException {
+        archiveStore.export(filter, gzip, out);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("completed", completed);
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("currentRule", currentRule);
+        stats.put("lastId", lastId);
+        stats.put("archived", archived.get());
+        stats.put("files", files.get());
+        stats.put("restored", restored.get());
+        stats.put("batchSize", batchSize);
+        stats.put("lastError", lastError);
+
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        rules.forEach(rule -> limits.put(rule.name(), rule.days()));
+        stats.put("rules", limits);
+        stats.put("archive", archiveStore.stats());
+        return stats;
+    }
+
+    private void run() {
+        log.info("Retention run started");
+        try {
+            for (Rule rule : rules) {
+                currentRule = rule.name();
+                LocalDateTime cutoff = LocalDateTime.now().minusDays(rule.days());
+                long afterId = 0;
+                while (!stopRequested) {
+                    long last = archiveBatch(rule, cutoff, afterId);
+                    if (last < 0) {
+                        break;
+                    }
+                    afterId = last;
+                    lastId = last;
+                    Thread.sleep(pauseMs);
+                }
+                if (stopRequested) {
+                    break;
+                }
+            }
+            completed = !stopRequested;
+            log.info("Retention run {}: {} rows archived in {} files",
+                    completed ? "finished" : "stopped", archived.get(), files.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            lastError = e.getMessage();
+            log.error("Retention run failed in rule {} after id {}", currentRule, lastId, e);
+        } finally {
+            currentRule = null;
+            running.set(false);
+        }
+    }
+
+    private int restoreBatch(List<AiRequest> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+        Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM ai_requests WHERE id IN (" + placeholders + ")", Long.class,
+                batch.stream().map(AiRequest::getId).toArray()));
+
+        List<AiRequest> missing = batch.stream().filter(row -> !existing.contains(row.getId())).toList();
+        aiRequestWriter.restore(missing);
+        return missing.size();
+    }
+
+    // ================= RULES =================
+
+    // per-user limits come first and are excluded from their role's rule,
+    // roles with a limit are excluded from the default rule; 0 days = keep
+    static List<Rule> rules(int defaultDays, Map<String, Integer> roleDays, Map<String, Integer> userDays) {
+        List<Rule> rules = new ArrayList<>();
+
+        List<Object> overriddenUsers = new ArrayList<>();
+        userDays.keySet().forEach(id -> overriddenUsers.add(Long.valueOf(id)));
+        String notOverridden = overriddenUsers.isEmpty() ? ""
+                : " AND r.user_id NOT IN (" + String.join(",", Collections.nCopies(overriddenUsers.size(), "?")) + ")";
+
+        userDays.forEach((id, days) -> {
+            if (days > 0) {
+                rules.add(new Rule("user " + id, days, "r.user_id = ?", List.of(Long.valueOf(id))));
+            }
+        });
+
+        roleDays.forEach((role, days) -> {
+            if (days > 0) {
+                List<Object> params = new ArrayList<>();
+                params.add(role);
+                params.addAll(overriddenUsers);
+                rules.add(new Rule("role " + role, days, "u.role = ?" + notOverridden, params));
+            }
+        });
+
+        if (defaultDays > 0) {
+            List<Object> params = new ArrayList<>(roleDays.keySet());
+            params.addAll(overriddenUsers);
+            String condition = roleDays.isEmpty() ? "1 = 1"
+                    : "(u.role IS NULL OR u.role NOT IN ("
+                            + String.join(",", Collections.nCopies(roleDays.size(), "?")) + "))";
+            rules.add(new Rule("default", defaultDays, condition + notOverridden, params));
+        }
+        return rules;
+    }
+
+    // "KEY:days,KEY:days"
+    static Map<String, Integer> parseDays(String value) {
+        Map<String, Integer> days = new LinkedHashMap<>();
+        if (value == null || value.isBlank()) {
+            return days;
+        }
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid retention entry: " + entry.trim());
+            }
+            days.put(parts[0].trim(), Integer.valueOf(parts[1].trim()));
+        }
+        return days;
+    }
+
+    private static AiRequest row(ResultSet rs) throws SQLException {
+        AiRequest row = new AiRequest(rs.getLong(1), CompressedTextConverter.decode(rs.getString(5)),
+                rs.getString(3), CompressedTextConverter.decode(rs.getString(6)), rs.getLong(2),
+                rs.getTimestamp(4).toLocalDateTime());
+        row.setPromptTokens(rs.getObject(7, Integer.class));
+        row.setCompletionTokens(rs.getObject(8, Integer.class));
+        row.setUpstreamTimeMs(rs.getObject(9, Integer.class));
+        row.setLatencyMs(rs.getObject(10, Integer.class));
+        return row;
+    }
+
+    // the listeners only need the metadata, which the archived entity has
+    private static AiRequestRef ref(AiRequest row) {
+        return new AiRequestRef() {
+            @Override
+            public Long getId() {
+                return row.getId();
+            }
+
+            @Override
+            public Long getUserId() {
+                return row.getUserId();
+            }
+
+            @Override
+            public String getAction() {
+                return row.getAction();
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return row.getCreatedAt();
+            }
+
+            @Override
+            public Integer getPromptTokens() {
+                return row.getPromptTokens();
+            }
+
+            @Override
+            public Integer getCompletionTokens() {
+                return row.getCompletionTokens();
+            }
+
+            @Override
+            public Integer getLatencyMs() {
+                return row.getLatencyMs();
+            }
+        };
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.aiapp.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.entity.CompressedTextConverter;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Streams {@code ai_requests} rows as NDJSON or CSV, optionally gzipped,
+ * straight from a forward-only, read-only JDBC cursor: rows are fetched
+ * {@code ai.export.fetch-size} at a time and each is written out before the
+ * next is read, so memory use does not depend on the size of the export.
+ * Connector/J ignores a positive fetch size unless {@code useCursorFetch} is
+ * set (which would switch every statement to server-side prepares), so on
+ * MySQL the result is streamed row by row instead, with
+ * {@code Integer.MIN_VALUE}.
+ *
+ * Exports run on {@code aiExportExecutor}, whose size also caps how many
+ * database connections long-running exports can hold at once.
+ */
+@Component
+public class HistoryExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryExporter.class);
+
+    private static final String SELECT_SQL =
+            "SELECT id, user_id, action, created_at, input_text, output,"
+            + " prompt_tokens, completion_tokens, upstream_time_ms, latency_ms FROM ai_requests";
+
+    private static final String[] COLUMNS = {
+            "id", "userId", "action", "createdAt", "input", "output",
+            "promptTokens", "completionTokens", "upstreamTimeMs", "latencyMs"
+    };
+
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * Parses a request parameter such as {@code csv} or {@code ndjson}.
+         */
+        public static Format parse(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value) || format.extension.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new RuntimeException("Unsupported export format: " + value);
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Which rows to export; null fields do not filter. {@code to} is
+     * inclusive.
+     */
+    public record Filter(Long userId, String action, LocalDate from, LocalDate to) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonMapper jsonMapper;
+    private final AsyncTaskExecutor exportExecutor;
+    private final int fetchSize;
+    private final long timeoutMs;
+
+    private final AtomicLong exports = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+
+    @Autowired
+    public HistoryExporter(
+            JdbcTemplate jdbcTemplate,
+            JsonMapper jsonMapper,
+            @Qualifier("aiExportExecutor") AsyncTaskExecutor exportExecutor,
+            @Value("${ai.export.fetch-size:500}") int fetchSize,
+            @Value("${ai.export.timeout-ms:1800000}") long timeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonMapper = jsonMapper;
+        this.exportExecutor = exportExecutor;
+        this.fetchSize = fetchSize;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * The executor that export response bodies should be written on.
+     */
+    public AsyncTaskExecutor executor() {
+        return exportExecutor;
+    }
+
+    /**
+     * How long an export response may take before the request times out.
+     */
+    public long timeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * Writes every row matching the filter to {@code out}, oldest first, and
+     * closes it. An I/O error (e.g. the client went away) stops the query.
+     */
+    public void export(Filter filter, Format format, boolean gzip, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long[] count = new long[1];
+        exports.incrementAndGet();
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                gzip ? new GZIPOutputStream(out, WRITE_BUFFER_CHARS) : out, StandardCharsets.UTF_8),
+                WRITE_BUFFER_CHARS)) {
+            RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+
+            List<Object> params = new ArrayList<>();
+            String sql = query(filter, params);
+
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(isMySql(con) ? Integer.MIN_VALUE : fetchSize);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                return ps;
+            }, rs -> {
+                try {
+                    rowWriter.write(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+
+            rowWriter.finish();
+        } catch (UncheckedIOException e) {
+            failed.incrementAndGet();
+            log.warn("History export stopped after {} rows: {}", count[0], e.getCause().toString());
+            throw e.getCause();
+        } catch (RuntimeException | IOException e) {
+            failed.incrementAndGet();
+            log.warn("History export failed after {} rows", count[0], e);
+            throw e;
+        } finally {
+            rows.addAndGet(count[0]);
+        }
+
+        log.info("Exported {} AI requests as {}{} in {} ms", count[0], format, gzip ? " (gzip)" : "",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("exports", exports.get());
+        stats.put("failed", failed.get());
+        stats.put("rows", rows.get());
+        stats.put("fetchSize", fetchSize);
+        stats.put("timeoutMs", timeoutMs);
+        return stats;
+    }
+
+    // the filter columns are covered by the (user_id, created_at, id) and
+    // (created_at, id) indexes, which also give the order
+    private static String query(Filter filter, List<Object> params) {
+        StringBuilder sql = new StringBuilder(SELECT_SQL).append(" WHERE 1 = 1");
+        if (filter.userId() != null) {
+            sql.append(" AND user_id = ?");
+            params.add(filter.userId());
+        }
+        if (filter.action() != null && !filter.action().isBlank()) {
+            sql.append(" AND action = ?");
+            params.add(filter.action());
+        }
+        if (filter.from() != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(Timestamp.valueOf(filter.from().atStartOfDay()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(filter.to().plusDays(1).atStartOfDay()));
+        }
+        return sql.append(" ORDER BY created_at, id").toString();
+    }
+
+    // ================= FORMATS =================
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    /** one JSON object per line */
+    private final class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) {
+            this.writer = writer;
+            this.generator = jsonMapper.writer().withRootValueSeparator("\n").createGenerator(writer);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException {
+            generator.writeStartObject();
+            generator.writeNumberProperty(COLUMNS[0], rs.getLong(1));
+            generator.writeNumberProperty(COLUMNS[1], rs.getLong(2));
+            generator.writeStringProperty(COLUMNS[2], rs.getString(3));
+            generator.writeStringProperty(COLUMNS[3], timestamp(rs.getTimestamp(4)));
+            generator.writeStringProperty(COLUMNS[4], CompressedTextConverter.decode(rs.getString(5)));
+            generator.writeStringProperty(COLUMNS[5], CompressedTextConverter.decode(rs.getString(6)));
+            for (int column = 7; column <= 10; column++) {
+                int value = rs.getInt(column);
+                if (rs.wasNull()) {
+                    generator.writeNullProperty(COLUMNS[column - 1]);
+                } else {
+                    generator.writeNumberProperty(COLUMNS[column - 1], value);
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+            writer.write('\n');
+        }
+    }
+
+    /** RFC 4180: header row, CRLF line ends, quoted only where needed */
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong(1)));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(2)));
+            writer.write(',');
+            writeField(rs.getString(3));
+            writer.write(',');
+            writeField(timestamp(rs.getTimestamp(4)));
+            writer.write(',');
+            writeField(CompressedTextConverter.decode(rs.getString(5)));
+            writer.write(',');
+            writeField(CompressedTextConverter.decode(rs.getString(6)));
+            for (int column = 7; column <= 10; column++) {
+                writer.write(',');
+                int value = rs.getInt(column);
+                if (!rs.wasNull()) {
+                    writer.write(Integer.toString(value));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            int from = 0;
+            for (int i = value.indexOf('"'); i >= 0; i = value.indexOf('"', i + 1)) {
+                writer.write(value, from, i + 1 - from);
+                writer.write('"');
+                from = i + 1;
+            }
+            writer.write(value, from, value.length() - from);
+            writer.write('"');
+        }
+    }
+
+    private static boolean isMySql(Connection con) throws SQLException {
+        return "MySQL".equalsIgnoreCase(con.getMetaData().getDatabaseProductName());
+    }
+
+    private static String timestamp(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime().toString();
+    }
+}
@@ -0,0 +1,635 @@
+package com.example.aiapp.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.dto.AiHistorySearchHitDto;
+import com.example.aiapp.dto.AiRequestRef;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.entity.CompressedTextConverter;
+import com.example.aiapp.repository.AiRequestRepository;
+
+/**
+ * In-memory inverted index over the input and output text of AI requests,
+ * behind {@code GET /ai/history/search}.
+ *
+ * The index is partitioned per user. A partition is built from
+ * {@code ai_requests} (one query on the {@code user_id} index) the first time
+ * its user searches, is kept current through {@link AiRequestListener} while
+ * it stays loaded, and is dropped after {@code ai.search.idle-minutes}
+ * without a search or when more than {@code ai.search.max-users} partitions
+ * are loaded. Only users who search hold memory, and a dropped partition is
+ * rebuilt from the database on next use.
+ *
+ * A query matches the entries containing every query term, ranked by BM25
+ * within the user's partition. Postings are sorted by id, so matching is an
+ * intersection driven by the rarest term. Snippets are cut from the rows of
+ * the requested page only, loaded by id after ranking.
+ */
+@Component
+public class HistorySearchIndex implements AiRequestListener {
+
+    private static final Logger log = LoggerFactory.getLogger(HistorySearchIndex.class);
+
+    private static final String USER_ROWS_SQL =
+            "SELECT id, input_text, output FROM ai_requests WHERE user_id = ?";
+
+    static final int SNIPPET_LENGTH = 200;
+
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final int MAX_QUERY_TERMS = 10;
+
+    // BM25 term-frequency saturation and length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "an", "and", "are", "as", "at", "be", "but", "by", "do", "for", "from", "has", "have", "he", "her",
+            "his", "if", "in", "into", "is", "it", "its", "me", "my", "no", "not", "of", "on", "or", "our", "she",
+            "so", "that", "the", "their", "them", "then", "there", "these", "they", "this", "to", "was", "we",
+            "were", "what", "which", "will", "with", "you", "your");
+
+    /** higher score first, then newer (higher id) first */
+    private static final Comparator<Hit> BEST_FIRST = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparing(Comparator.comparingLong(Hit::id).reversed());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AiRequestRepository aiRequestRepository;
+    private final boolean enabled;
+    private final int maxTokensPerField;
+    private final int maxUsers;
+    private final long idleNanos;
+    private final int maxPageSize;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<Long, Partition> partitions = new ConcurrentHashMap<>();
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadedDocuments = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+
+    @Autowired
+    public HistorySearchIndex(
+            JdbcTemplate jdbcTemplate,
+            AiRequestRepository aiRequestRepository,
+            @Value("${ai.search.enabled:true}") boolean enabled,
+            @Value("${ai.search.max-tokens-per-field:20000}") int maxTokensPerField,
+            @Value("${ai.search.max-users:2000}") int maxUsers,
+            @Value("${ai.search.idle-minutes:30}") long idleMinutes,
+            @Value("${ai.search.max-page-size:50}") int maxPageSize) {
+        this(jdbcTemplate, aiRequestRepository, enabled, maxTokensPerField, maxUsers,
+                TimeUnit.MINUTES.toNanos(idleMinutes), maxPageSize, System::nanoTime);
+    }
+
+    HistorySearchIndex(JdbcTemplate jdbcTemplate, AiRequestRepository aiRequestRepository, boolean enabled,
+            int maxTokensPerField, int maxUsers, long idleNanos, int maxPageSize, LongSupplier clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.aiRequestRepository = aiRequestRepository;
+        this.enabled = enabled;
+        this.maxTokensPerField = maxTokensPerField;
+        this.maxUsers = maxUsers;
+        this.idleNanos = idleNanos;
+        this.maxPageSize = maxPageSize;
+        this.clock = clock;
+    }
+
+    // ================= SEARCH =================
+
+    /**
+     * Returns one page of the user's history entries that contain every term
+     * of the query, best match first.
+     */
+    public Page<AiHistorySearchHitDto> search(Long userId, String query, int page, int size) {
+        if (!enabled) {
+            throw new RuntimeException("History search is disabled");
+        }
+        if (query == null || query.isBlank()) {
+            throw new RuntimeException("Search query is required");
+        }
+
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), maxPageSize));
+        List<String> terms = queryTerms(query);
+        if (terms.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+
+        Partition partition = partition(userId);
+        int limit = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE);
+
+        long start = System.nanoTime();
+        Ranking ranking = partition.rank(terms, limit);
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - start);
+
+        List<Hit> hits = ranking.hits.subList((int) Math.min(pageable.getOffset(), ranking.hits.size()),
+                ranking.hits.size());
+        if (hits.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, ranking.total);
+        }
+
+        Map<Long, AiRequest> rows = aiRequestRepository.findAllById(hits.stream().map(Hit::id).toList()).stream()
+                .collect(Collectors.toMap(AiRequest::getId, Function.identity()));
+        Set<String> termSet = new HashSet<>(terms);
+
+        List<AiHistorySearchHitDto> content = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            AiRequest row = rows.get(hit.id());
+            // deleted between ranking and loading the page
+            if (row == null) {
+                continue;
+            }
+            content.add(new AiHistorySearchHitDto(row.getId(), row.getAction(), row.getCreatedAt(), hit.score(),
+                    snippet(row.getInputText(), termSet, SNIPPET_LENGTH),
+                    snippet(row.getOutput(), termSet, SNIPPET_LENGTH),
+                    row.getPromptTokens(), row.getCompletionTokens()));
+        }
+        return new PageImpl<>(content, pageable, ranking.total);
+    }
+
+    // ================= INCREMENTAL UPDATES =================
+
+    @Override
+    public void onRequestsCreated(List<AiRequest> requests) {
+        for (AiRequest request : requests) {
+            // users without a loaded partition pick the row up from the database later
+            Partition partition = partitions.get(request.getUserId());
+            if (partition != null && request.getId() != null) {
+                partition.add(request.getId(), termCounts(request.getInputText(), request.getOutput()));
+            }
+        }
+    }
+
+    @Override
+    public void onRequestDeleted(AiRequestRef request) {
+        Partition partition = partitions.get(request.getUserId());
+        if (partition != null) {
+            partition.remove(request.getId());
+        }
+    }
+
+    // ================= PARTITIONS =================
+
+    /**
+     * Drops the user's partition, or every partition if {@code userId} is
+     * null, so it is rebuilt from the database on next use.
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            partitions.clear();
+        } else {
+            partitions.remove(userId);
+        }
+    }
+
+    /**
+     * Rebuilds the user's partition from the database now rather than on
+     * their next search.
+     */
+    public void rebuild(Long userId) {
+        partitions.remove(userId);
+        partition(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${ai.search.cleanup-interval-ms:60000}")
+    public void evictIdle() {
+        long now = clock.getAsLong();
+        partitions.entrySet().removeIf(entry -> {
+            boolean idle = now - entry.getValue().lastAccess > idleNanos;
+            if (idle) {
+                evictions.incrementAndGet();
+            }
+            return idle;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        long documents = 0;
+        long terms = 0;
+        for (Partition partition : partitions.values()) {
+            documents += partition.documentCount();
+            terms += partition.termCount();
+        }
+        long queryCount = queries.get();
+        long loadCount = loads.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("loadedUsers", partitions.size());
+        stats.put("maxUsers", maxUsers);
+        stats.put("indexedDocuments", documents);
+        stats.put("distinctTerms", terms);
+        stats.put("loads", loadCount);
+        stats.put("loadedDocuments", loadedDocuments.get());
+        stats.put("avgLoadMs", loadCount == 0 ? 0.0 : loadNanos.get() / 1_000_000.0 / loadCount);
+        stats.put("evictions", evictions.get());
+        stats.put("queries", queryCount);
+        stats.put("avgQueryMs", queryCount == 0 ? 0.0 : queryNanos.get() / 1_000_000.0 / queryCount);
+        return stats;
+    }
+
+    private Partition partition(Long userId) {
+        Partition partition = partitions.computeIfAbsent(userId, id -> new Partition());
+        partition.lastAccess = clock.getAsLong();
+
+        if (!partition.loaded) {
+            synchronized (partition) {
+                if (!partition.loaded) {
+                    load(userId, partition);
+                    evictOverflow();
+                }
+            }
+        }
+        return partition;
+    }
+
+    /**
+     * Fills a new partition from the database. Rows created or deleted while
+     * the query runs are applied by the listener as well; adds are idempotent
+     * and deletes leave a tombstone, so either order ends up consistent.
+     */
+    private void load(Long userId, Partition partition) {
+        long start = System.nanoTime();
+        long[] count = new long[1];
+        try {
+            jdbcTemplate.query(USER_ROWS_SQL, rs -> {
+                partition.add(rs.getLong(1), termCounts(
+                        CompressedTextConverter.decode(rs.getString(2)),
+                        CompressedTextConverter.decode(rs.getString(3))));
+                count[0]++;
+            }, userId);
+        } catch (RuntimeException e) {
+            partitions.remove(userId, partition);
+            throw e;
+        }
+        partition.finishLoading();
+
+        long elapsed = System.nanoTime() - start;
+        loads.incrementAndGet();
+        loadedDocuments.addAndGet(count[0]);
+        loadNanos.addAndGet(elapsed);
+        log.debug("Loaded search index for user {}: {} entries in {} ms", userId, count[0],
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private void evictOverflow() {
+        while (partitions.size() > maxUsers) {
+            Map.Entry<Long, Partition> oldest = null;
+            for (Map.Entry<Long, Partition> entry : partitions.entrySet()) {
+                if (oldest == null || entry.getValue().lastAccess < oldest.getValue().lastAccess) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null || !partitions.remove(oldest.getKey(), oldest.getValue())) {
+                return;
+            }
+            evictions.incrementAndGet();
+        }
+    }
+
+    // ================= TEXT =================
+
+    /**
+     * Calls {@code sink} with each indexable term of the text and its offset:
+     * runs of letters and digits, lower-cased, without stopwords and terms too
+     * short or too long to be useful. Stops after {@code maxTokens} terms.
+     */
+    static void forEachTerm(String text, int maxTokens, ObjIntConsumer<String> sink) {
+        if (text == null) {
+            return;
+        }
+
+        StringBuilder term = new StringBuilder(MAX_TERM_LENGTH);
+        int emitted = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length() && emitted < maxTokens; i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+                if (term.length() <= MAX_TERM_LENGTH) {
+                    term.append(Character.toLowerCase(c));
+                }
+                continue;
+            }
+            if (start >= 0) {
+                int length = term.length();
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    String value = term.toString();
+                    if (!STOPWORDS.contains(value)) {
+                        sink.accept(value, start);
+                        emitted++;
+                    }
+                }
+                term.setLength(0);
+                start = -1;
+            }
+        }
+    }
+
+    static List<String> queryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        forEachTerm(query, Integer.MAX_VALUE, (term, offset) -> terms.add(term));
+        return terms.stream().limit(MAX_QUERY_TERMS).toList();
+    }
+
+    /**
+     * Up to {@code length} characters of the text around its first term in
+     * {@code terms}; the start of the text if none occurs.
+     */
+    static String snippet(String text, Set<String> terms, int length) {
+        if (text == null || text.length() <= length) {
+            return text;
+        }
+
+        int[] match = {-1};
+        forEachTerm(text, Integer.MAX_VALUE, (term, offset) -> {
+            if (match[0] < 0 && terms.contains(term)) {
+                match[0] = offset;
+            }
+        });
+
+        int start = 0;
+        if (match[0] > 0) {
+            // some context before the match, starting on a word
+            start = Math.max(0, Math.min(match[0] - length / 4, text.length() - length));
+            while (start > 0 && start < match[0] && !Character.isWhitespace(text.charAt(start - 1))) {
+                start++;
+            }
+        }
+        int end = Math.min(text.length(), start + length);
+        return (start > 0 ? "..." : "") + text.substring(start, end) + (end < text.length() ? "..." : "");
+    }
+
+    private TermCounts termCounts(String input, String output) {
+        TermCounts counts = new TermCounts();
+        forEachTerm(input, maxTokensPerField, counts);
+        forEachTerm(output, maxTokensPerField, counts);
+        return counts;
+    }
+
+    // ================= INDEX STRUCTURES =================
+
+    private record Hit(long id, double score) {
+    }
+
+    private record Ranking(long total, List<Hit> hits) {
+    }
+
+    /** term frequencies of one entry, computed before taking the partition lock */
+    private static final class TermCounts implements ObjIntConsumer<String> {
+        final HashMap<String, int[]> frequencies = new HashMap<>();
+        int length;
+
+        @Override
+        public void accept(String term, int offset) {
+            frequencies.computeIfAbsent(term, t -> new int[1])[0]++;
+            length++;
+        }
+    }
+
+    /** one indexed entry: its length in terms, and its distinct terms for removal */
+    private record Document(int length, String[] terms) {
+    }
+
+    /**
+     * Entry ids containing one term, ascending, with the term's frequency in
+     * each. Ids mostly arrive in increasing order, so adds are usually appends.
+     */
+    private static final class Postings {
+        final String term;
+        long[] ids = new long[2];
+        int[] frequencies = new int[2];
+        int size;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void add(long id, int frequency) {
+            int at = size;
+            if (size > 0 && ids[size - 1] >= id) {
+                at = Arrays.binarySearch(ids, 0, size, id);
+                if (at >= 0) {
+                    frequencies[at] = frequency;
+                    return;
+                }
+                at = -at - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(frequencies, at, frequencies, at + 1, size - at);
+            ids[at] = id;
+            frequencies[at] = frequency;
+            size++;
+        }
+
+        void remove(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(frequencies, at + 1, frequencies, at, size - at - 1);
+            size--;
+        }
+
+        /** index of the first id at or after {@code from} that is >= {@code id} */
+        int seek(long id, int from) {
+            int at = Arrays.binarySearch(ids, from, size, id);
+            return at >= 0 ? at : -at - 1;
+        }
+    }
+
+    /**
+     * One user's index. Searches share the read lock; updates take the write
+     * lock only to merge term counts computed beforehand.
+     */
+    private static final class Partition {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final HashMap<String, Postings> postings = new HashMap<>();
+        final HashMap<Long, Document> documents = new HashMap<>();
+        long totalLength;
+        /** ids deleted while loading, so the loader does not add them back; null once loaded */
+        Set<Long> tombstones = new HashSet<>();
+
+        volatile boolean loaded;
+        volatile long lastAccess;
+
+        void add(long id, TermCounts counts) {
+            lock.writeLock().lock();
+            try {
+                if (documents.containsKey(id) || (tombstones != null && tombstones.contains(id))) {
+                    return;
+                }
+                String[] terms = new String[counts.frequencies.size()];
+                int i = 0;
+                for (Map.Entry<String, int[]> entry : counts.frequencies.entrySet()) {
+                    Postings list = postings.computeIfAbsent(entry.getKey(), Postings::new);
+                    list.add(id, entry.getValue()[0]);
+                    // share the dictionary's copy of the term
+                    terms[i++] = list.term;
+                }
+                documents.put(id, new Document(counts.length, terms));
+                totalLength += counts.length;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long id) {
+            lock.writeLock().lock();
+            try {
+                if (tombstones != null) {
+                    tombstones.add(id);
+                }
+                Document document = documents.remove(id);
+                if (document == null) {
+                    return;
+                }
+                for (String term : document.terms()) {
+                    Postings list = postings.get(term);
+                    list.remove(id);
+                    if (list.size == 0) {
+                        postings.remove(term);
+                    }
+                }
+                totalLength -= document.length();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void finishLoading() {
+            lock.writeLock().lock();
+            try {
+                tombstones = null;
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Counts the entries containing every term and returns the best
+         * {@code limit} of them, best first.
+         */
+        Ranking rank(List<String> terms, int limit) {
+            lock.readLock().lock();
+            try {
+                Postings[] lists = new Postings[terms.size()];
+                for (int i = 0; i < lists.length; i++) {
+                    lists[i] = postings.get(terms.get(i));
+                    if (lists[i] == null) {
+                        return new Ranking(0, List.of());
+                    }
+                }
+                Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+                int documentCount = documents.size();
+                double averageLength = Math.max(1.0, (double) totalLength / documentCount);
+                double[] idf = new double[lists.length];
+                for (int i = 0; i < lists.length; i++) {
+                    double df = lists[i].size;
+                    idf[i] = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                }
+
+                // worst of the current best on top
+                PriorityQueue<Hit> best = new PriorityQueue<>(BEST_FIRST.reversed());
+                int[] cursors = new int[lists.length];
+                long total = 0;
+
+                Postings rarest = lists[0];
+                candidates:
+                for (int i = 0; i < rarest.size; i++) {
+                    long id = rarest.ids[i];
+                    for (int j = 1; j < lists.length; j++) {
+                        int at = lists[j].seek(id, cursors[j]);
+                        cursors[j] = at;
+                        if (at == lists[j].size) {
+                            break candidates;
+                        }
+                        if (lists[j].ids[at] != id) {
+                            continue candidates;
+                        }
+                    }
+
+                    double lengthNorm = K1 * (1 - B + B * documents.get(id).length() / averageLength);
+                    double score = 0;
+                    for (int j = 0; j < lists.length; j++) {
+                        int tf = j == 0 ? rarest.frequencies[i] : lists[j].frequencies[cursors[j]];
+                        score += idf[j] * tf * (K1 + 1) / (tf + lengthNorm);
+                    }
+
+                    total++;
+                    Hit hit = new Hit(id, score);
+                    if (best.size() < limit) {
+                        best.add(hit);
+                    } else if (BEST_FIRST.compare(hit, best.peek()) < 0) {
+                        best.poll();
+                        best.add(hit);
+                    }
+                }
+
+                List<Hit> hits = new ArrayList<>(best);
+                hits.sort(BEST_FIRST);
+                return new Ranking(total, hits);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int documentCount() {
+            lock.readLock().lock();
+            try {
+                return documents.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int termCount() {
+            lock.readLock().lock();
+            try {
+                return postings.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.aiapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Limit;
+
+import com.example.aiapp.dto.CursorPageDto;
+import com.example.aiapp.entity.AiRequest;
+
+/**
+ * Position in a listing ordered by {@code (createdAt DESC, id DESC)}, encoded
+ * as an opaque URL-safe string for clients.
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor from {@link #encode()}; returns null for a null or blank
+     * value, which means "first page".
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.valueOf(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    /**
+     * One more row than the page size is fetched to tell whether a next page exists.
+     */
+    public static Limit probeLimit(int size) {
+        return Limit.of(clamp(size) + 1);
+    }
+
+    /**
+     * Trims the probe row and builds the page, mapping each row with {@code mapper}.
+     */
+    public static <T> CursorPageDto<T> page(List<AiRequest> rows, int size, Function<AiRequest, T> mapper) {
+        int pageSize = clamp(size);
+        boolean hasNext = rows.size() > pageSize;
+        List<AiRequest> content = hasNext ? rows.subList(0, pageSize) : rows;
+
+        String next = null;
+        if (hasNext) {
+            AiRequest last = content.get(content.size() - 1);
+            next = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return new CursorPageDto<>(content.stream().map(mapper).toList(), next);
+    }
+
+    private static int clamp(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+}
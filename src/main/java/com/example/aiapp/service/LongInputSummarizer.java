@@ -0,0 +1,248 @@
+package com.example.aiapp.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Map-reduce pipeline for inputs too long for a single prompt.
+ *
+ * The text is split with {@link TextChunker}, each chunk is condensed by its
+ * own upstream call (at most {@code ai.long-input.parallelism} per request
+ * in flight), and the partial results are combined by a final call. If the
+ * partials are themselves too long for one prompt, they are condensed again
+ * before the final call. Wall-clock time is then roughly that of
+ * {@code chunks / parallelism} short completions plus one, instead of one
+ * very long completion.
+ *
+ * Only the actions in {@code ai.long-input.actions} use the pipeline;
+ * REWRITE needs the whole text in one piece.
+ */
+@Component
+public class LongInputSummarizer {
+
+    /**
+     * Notified on the calling thread each time a chunk of the first round has
+     * been condensed.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onChunkDone(int done, int total);
+    }
+
+    // rounds of condensing partials before giving up and sending what is left
+    private static final int MAX_ROUNDS = 3;
+
+    private final AsyncTaskExecutor executor;
+    private final boolean enabled;
+    private final int thresholdTokens;
+    private final int chunkTokens;
+    private final int parallelism;
+    private final int maxChunks;
+    private final Set<String> actions;
+
+    private final AtomicLong inputs = new AtomicLong();
+    private final AtomicLong chunkCalls = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public LongInputSummarizer(
+            @Qualifier("aiChunkExecutor") AsyncTaskExecutor executor,
+            @Value("${ai.long-input.enabled:true}") boolean enabled,
+            @Value("${ai.long-input.threshold-tokens:6000}") int thresholdTokens,
+            @Value("${ai.long-input.chunk-tokens:3000}") int chunkTokens,
+            @Value("${ai.long-input.parallelism:4}") int parallelism,
+            @Value("${ai.long-input.max-chunks:32}") int maxChunks,
+            @Value("${ai.long-input.actions:SUMMARIZE,EXPLAIN}") String actions) {
+        this.executor = executor;
+        this.enabled = enabled;
+        this.thresholdTokens = thresholdTokens;
+        this.chunkTokens = chunkTokens;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxChunks = maxChunks;
+        this.actions = Arrays.stream(actions.split(","))
+                .map(String::trim)
+                .map(String::toUpperCase)
+                .filter(a -> !a.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Whether the input should go through the pipeline instead of one prompt.
+     */
+    public boolean applies(String text, String action) {
+        return enabled
+                && text != null
+                && action != null
+                && actions.contains(action.toUpperCase())
+                && TextChunker.estimateTokens(text) > thresholdTokens;
+    }
+
+    /**
+     * Estimated number of upstream calls for the input: one per chunk plus the
+     * final combining call, or 1 if the pipeline does not apply.
+     */
+    public int upstreamCalls(String text, String action) {
+        if (!applies(text, action)) {
+            return 1;
+        }
+        int tokens = TextChunker.estimateTokens(text);
+        return (tokens + chunkTokens - 1) / chunkTokens + 1;
+    }
+
+    /**
+     * Runs the pipeline. {@code condense} performs one (blocking, resilient)
+     * upstream call for a chunk prompt on a worker thread; {@code combine}
+     * performs the final call on the calling thread, so that it may stream.
+     *
+     * @param progress may be null
+     * @return the final output, with the usage of all calls added up
+     */
+    Generation summarize(String text, String action, Function<String, Generation> condense,
+            Function<String, Generation> combine, ProgressListener progress) {
+        long start = System.nanoTime();
+        String upperAction = action.toUpperCase();
+
+        List<String> chunks = TextChunker.split(text, chunkTokens);
+        if (chunks.size() > maxChunks) {
+            rejected.incrementAndGet();
+            throw new RuntimeException("Input is too long: " + chunks.size()
+                    + " parts, at most " + maxChunks + " are supported");
+        }
+        inputs.incrementAndGet();
+
+        List<Generation> calls = new ArrayList<>();
+        List<String> partials = condenseAll(chunks, upperAction, false, condense, progress, calls);
+        String combined = joinPartials(partials);
+
+        for (int round = 1; round < MAX_ROUNDS && TextChunker.estimateTokens(combined) > thresholdTokens; round++) {
+            partials = condenseAll(TextChunker.split(combined, chunkTokens), upperAction, true, condense, null, calls);
+            combined = joinPartials(partials);
+        }
+
+        Generation result = combine.apply(combinePrompt(upperAction, combined));
+        calls.add(result);
+
+        return Generation.combine(result.output, calls, System.nanoTime() - start);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("thresholdTokens", thresholdTokens);
+        stats.put("chunkTokens", chunkTokens);
+        stats.put("parallelism", parallelism);
+        stats.put("actions", actions);
+        stats.put("inputs", inputs.get());
+        stats.put("chunkCalls", chunkCalls.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    /**
+     * Condenses every piece with at most {@code parallelism} calls in flight
+     * and returns the results in input order. The first failure is rethrown
+     * once no further pieces are started; calls already in flight are left to
+     * finish on their own.
+     */
+    private List<String> condenseAll(List<String> pieces, String action, boolean ofPartials,
+            Function<String, Generation> condense, ProgressListener progress, List<Generation> calls) {
+        int total = pieces.size();
+        String[] outputs = new String[total];
+        Generation[] generations = new Generation[total];
+        BlockingQueue<Object> finished = new LinkedBlockingQueue<>();
+
+        int next = 0;
+        int inFlight = 0;
+        for (int done = 0; done < total; done++) {
+            while (next < total && inFlight < parallelism) {
+                int index = next++;
+                String prompt = condensePrompt(action, ofPartials, index + 1, total, pieces.get(index));
+                chunkCalls.incrementAndGet();
+                CompletableFuture.supplyAsync(() -> condense.apply(prompt), executor)
+                        .whenComplete((generation, error) -> {
+                            if (error != null) {
+                                finished.add(error);
+                            } else {
+                                generations[index] = generation;
+                                finished.add(index);
+                            }
+                        });
+                inFlight++;
+            }
+
+            Object outcome = take(finished);
+            inFlight--;
+            if (outcome instanceof Throwable error) {
+                throw unwrap(error);
+            }
+            outputs[(Integer) outcome] = generations[(Integer) outcome].output;
+
+            if (progress != null) {
+                progress.onChunkDone(done + 1, total);
+            }
+        }
+
+        calls.addAll(Arrays.asList(generations));
+        return Arrays.asList(outputs);
+    }
+
+    static String condensePrompt(String action, boolean ofPartials, int part, int total, String piece) {
+        if (ofPartials) {
+            return "Condense these notes on a long text, keeping every key point:\n" + piece;
+        }
+        if ("EXPLAIN".equals(action)) {
+            return "This is part " + part + " of " + total + " of a longer text. List its key points and any"
+                    + " terms a reader would need explained:\n" + piece;
+        }
+        return "This is part " + part + " of " + total + " of a longer text. Summarize it:\n" + piece;
+    }
+
+    static String combinePrompt(String action, String partials) {
+        if ("EXPLAIN".equals(action)) {
+            return "These are notes on consecutive parts of a longer text. Using them, explain the whole text"
+                    + " clearly:\n" + partials;
+        }
+        return "These are summaries of consecutive parts of a longer text. Combine them into one summary of the"
+                + " whole text:\n" + partials;
+    }
+
+    private static String joinPartials(List<String> partials) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < partials.size(); i++) {
+            if (i > 0) {
+                joined.append("\n\n");
+            }
+            joined.append("Part ").append(i + 1).append(":\n").append(partials.get(i).strip());
+        }
+        return joined.toString();
+    }
+
+    private static Object take(BlockingQueue<Object> finished) {
+        try {
+            return finished.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while summarizing", e);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.aiapp.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.example.aiapp.exception.ServiceBusyException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs password hashing on a small dedicated pool instead of the servlet
+ * threads. BCrypt is CPU-bound by design, so the pool defaults to one thread
+ * per core; a login spike queues up to {@code auth.hashing.queue-capacity}
+ * hashes and rejects the rest with {@link ServiceBusyException} rather than
+ * letting hashing take every CPU and request thread.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final PasswordEncoder passwordEncoder;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitMs;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong rehashed = new AtomicLong();
+
+    public PasswordHashingService(
+            PasswordEncoder passwordEncoder,
+            @Value("${auth.hashing.pool-size:0}") int poolSize,
+            @Value("${auth.hashing.queue-capacity:100}") int queueCapacity,
+            @Value("${auth.hashing.max-wait-ms:10000}") long maxWaitMs,
+            MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.strength = passwordEncoder instanceof BCryptPasswordEncoder
+                ? costOf(passwordEncoder.encode("calibration-probe"))
+                : -1;
+        this.maxWaitMs = maxWaitMs;
+
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // includes the wait for a hashing thread, i.e. what the request sees
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.matchesTimer = hashTimer(meterRegistry, "matches");
+        Gauge.builder("auth.hashing.queue.size", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes in progress")
+                .register(meterRegistry);
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("auth.password.hash")
+                .description("Password hashing time including queueing")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public String encode(String rawPassword) {
+        return encodeTimer.record(() -> submit(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return matchesTimer.record(() -> submit(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * True if the stored hash was made with a different BCrypt cost than the
+     * current one. Hashes in an unknown format are left alone.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (strength < 0 || encodedPassword == null) {
+            return false;
+        }
+        int cost = costOf(encodedPassword);
+        return cost > 0 && cost != strength;
+    }
+
+    /**
+     * Re-hashes a password in the background with the current cost and hands
+     * the new hash to {@code store}. Skipped if the pool is saturated; the
+     * next login will try again.
+     */
+    public void rehashAsync(String rawPassword, Consumer<String> store) {
+        try {
+            executor.execute(() -> {
+                try {
+                    store.accept(passwordEncoder.encode(rawPassword));
+                    rehashed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    log.warn("Password rehash failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("poolSize", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("remainingCapacity", executor.getQueue().remainingCapacity());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("rejected", rejected.get());
+        stats.put("rehashed", rehashed.get());
+        stats.put("bcryptStrength", strength);
+        return stats;
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new ServiceBusyException("Server is busy, please try again");
+        }
+
+        try {
+            return future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Server is busy, please try again");
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.incrementAndGet();
+            throw new ServiceBusyException("Server is busy, please try again");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    static int costOf(String encodedPassword) {
+        Matcher m = BCRYPT_COST.matcher(encodedPassword);
+        return m.find() ? Integer.parseInt(m.group(1)) : -1;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.aiapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded in-memory cache of AI outputs, keyed on model + action + a hash of
+ * the normalized input text. Entries are evicted least-recently-used once the
+ * cache is full and are dropped once their TTL has passed.
+ */
+@Component
+public class ResponseCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    @Autowired
+    public ResponseCache(
+            @Value("${ai.cache.enabled:true}") boolean enabled,
+            @Value("${ai.cache.max-entries:1000}") int maxEntries,
+            @Value("${ai.cache.ttl-seconds:600}") long ttlSeconds) {
+        this(enabled, maxEntries, ttlSeconds, System::nanoTime);
+    }
+
+    ResponseCache(boolean enabled, int maxEntries, long ttlSeconds, LongSupplier clock) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.clock = clock;
+    }
+
+    /**
+     * Builds the cache key for a request. Whitespace runs in the text are
+     * collapsed and the ends trimmed, so trivially different pastes share an
+     * entry.
+     */
+    public static String key(String model, String action, String text) {
+        String normalized = text == null ? "" : text.strip().replaceAll("\\s+", " ");
+        return model + ":" + action.toUpperCase() + ":" + sha256(normalized);
+    }
+
+    /**
+     * Returns the cached output for the key, or null on a miss or expired entry.
+     */
+    public String get(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            if (entry.expiresAt - clock.getAsLong() <= 0) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+
+            hits.incrementAndGet();
+            return entry.output;
+        }
+    }
+
+    public void put(String key, String output) {
+        if (!enabled || maxEntries <= 0) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(key, new Entry(output, clock.getAsLong() + ttlNanos));
+
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Entry(String output, long expiresAt) {
+    }
+}
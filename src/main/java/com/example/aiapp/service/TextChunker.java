@@ -0,0 +1,93 @@
+package com.example.aiapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits long text into chunks of at most a given number of tokens, cutting
+ * on paragraph boundaries where possible, then on sentence boundaries, and
+ * only as a last resort inside a sentence (at whitespace).
+ *
+ * Token counts are estimated at four characters per token, which is close
+ * enough for English text with LLaMA-family tokenizers to size prompts.
+ */
+public final class TextChunker {
+
+    static final int CHARS_PER_TOKEN = 4;
+
+    private static final Pattern PARAGRAPHS = Pattern.compile("\\n\\s*\\n");
+
+    private static final Pattern SENTENCES = Pattern.compile("(?<=[.!?])\\s+");
+
+    private TextChunker() {
+    }
+
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Splits {@code text} into chunks of at most {@code maxTokens} estimated
+     * tokens each. Paragraph breaks between pieces packed into the same chunk
+     * are kept.
+     */
+    public static List<String> split(String text, int maxTokens) {
+        int maxChars = maxTokens * CHARS_PER_TOKEN;
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String paragraph : PARAGRAPHS.split(text.strip())) {
+            if (paragraph.length() <= maxChars) {
+                append(chunks, current, paragraph, "\n\n", maxChars);
+                continue;
+            }
+            for (String sentence : SENTENCES.split(paragraph)) {
+                if (sentence.length() <= maxChars) {
+                    append(chunks, current, sentence, " ", maxChars);
+                    continue;
+                }
+                for (String piece : hardSplit(sentence, maxChars)) {
+                    append(chunks, current, piece, " ", maxChars);
+                }
+            }
+        }
+
+        if (!current.isEmpty()) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    private static void append(List<String> chunks, StringBuilder current, String piece, String separator,
+            int maxChars) {
+        if (piece.isBlank()) {
+            return;
+        }
+        if (!current.isEmpty() && current.length() + separator.length() + piece.length() > maxChars) {
+            chunks.add(current.toString());
+            current.setLength(0);
+        }
+        if (!current.isEmpty()) {
+            current.append(separator);
+        }
+        current.append(piece.strip());
+    }
+
+    // a "sentence" longer than a whole chunk: cut at the last whitespace that fits
+    private static List<String> hardSplit(String sentence, int maxChars) {
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        while (sentence.length() - start > maxChars) {
+            int end = start + maxChars;
+            int space = sentence.lastIndexOf(' ', end);
+            if (space > start) {
+                end = space;
+            }
+            pieces.add(sentence.substring(start, end));
+            start = end;
+        }
+        pieces.add(sentence.substring(start));
+        return pieces;
+    }
+}
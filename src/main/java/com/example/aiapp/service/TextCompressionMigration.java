@@ -0,0 +1,191 @@
+package com.example.aiapp.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.entity.CompressedTextConverter;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Background re-encoding of {@code ai_requests} rows written before
+ * compression was enabled. Rows are walked in id order, {@code batch-size}
+ * at a time, with a pause between batches to keep the load on the database
+ * low; rows already encoded, or too short to compress, are left alone, so a
+ * run can be stopped and restarted at any time.
+ *
+ * Started from {@code POST /admin/compression/migrate}, or at startup with
+ * {@code ai.compression.migration.run-on-startup=true}.
+ */
+@Component
+public class TextCompressionMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(TextCompressionMigration.class);
+
+    private static final String SELECT_SQL =
+            "SELECT id, input_text, output FROM ai_requests WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String UPDATE_SQL = "UPDATE ai_requests SET input_text = ?, output = ? WHERE id = ?";
+
+    private record Row(long id, String inputText, String output) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CompressedTextConverter converter;
+    private final int batchSize;
+    private final long pauseMs;
+    private final boolean runOnStartup;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong rewritten = new AtomicLong();
+    private final AtomicLong charsBefore = new AtomicLong();
+    private final AtomicLong charsAfter = new AtomicLong();
+    private volatile long lastId;
+    private volatile String lastError;
+    private volatile boolean completed;
+
+    public TextCompressionMigration(
+            JdbcTemplate jdbcTemplate,
+            CompressedTextConverter converter,
+            @Value("${ai.compression.migration.batch-size:500}") int batchSize,
+            @Value("${ai.compression.migration.pause-ms:200}") long pauseMs,
+            @Value("${ai.compression.migration.run-on-startup:false}") boolean runOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.converter = converter;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+        this.runOnStartup = runOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void startOnBoot() {
+        if (runOnStartup) {
+            start();
+        }
+    }
+
+    /**
+     * Starts a run in the background from the first row.
+     *
+     * @return false if a run is already in progress
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested = false;
+        completed = false;
+        lastError = null;
+        lastId = 0;
+        scanned.set(0);
+        rewritten.set(0);
+        charsBefore.set(0);
+        charsAfter.set(0);
+        Thread worker = new Thread(this::run, "text-compression-migration");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    /**
+     * Asks a running migration to stop after the current batch.
+     */
+    @PreDestroy
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Re-encodes one batch of rows after {@code afterId} on the calling thread.
+     *
+     * @return the id of the last row scanned, or -1 if there were no more rows
+     */
+    long migrateBatch(long afterId) {
+        List<Row> rows = jdbcTemplate.query(SELECT_SQL,
+                (rs, i) -> new Row(rs.getLong(1), rs.getString(2), rs.getString(3)),
+                afterId, batchSize);
+        if (rows.isEmpty()) {
+            return -1;
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        for (Row row : rows) {
+            String inputText = reencode(row.inputText());
+            String output = reencode(row.output());
+            if (!inputText.equals(row.inputText()) || !output.equals(row.output())) {
+                updates.add(new Object[] {inputText, output, row.id()});
+                charsBefore.addAndGet(row.inputText().length() + row.output().length());
+                charsAfter.addAndGet(inputText.length() + output.length());
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+
+        scanned.addAndGet(rows.size());
+        rewritten.addAndGet(updates.size());
+        return rows.get(rows.size() - 1).id();
+    }
+
+    // a stored value with the header is already in the new format
+    private String reencode(String stored) {
+        return CompressedTextConverter.isEncoded(stored) ? stored : converter.encode(stored);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("running", running.get());
+        stats.put("completed", completed);
+        stats.put("scanned", scanned.get());
+        stats.put("rewritten", rewritten.get());
+        stats.put("lastId", lastId);
+        stats.put("charsBefore", charsBefore.get());
+        stats.put("charsAfter", charsAfter.get());
+        stats.put("charsSaved", charsBefore.get() - charsAfter.get());
+        stats.put("batchSize", batchSize);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    private void run() {
+        log.info("Text compression migration started");
+        try {
+            long afterId = 0;
+            while (!stopRequested) {
+                long last = migrateBatch(afterId);
+                if (last < 0) {
+                    completed = true;
+                    break;
+                }
+                afterId = last;
+                lastId = last;
+                Thread.sleep(pauseMs);
+            }
+            log.info("Text compression migration {}: {} rows scanned, {} rewritten, {} chars saved",
+                    completed ? "finished" : "stopped", scanned.get(), rewritten.get(),
+                    charsBefore.get() - charsAfter.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            log.error("Text compression migration failed after id {}", lastId, e);
+        } finally {
+            running.set(false);
+        }
+    }
+}
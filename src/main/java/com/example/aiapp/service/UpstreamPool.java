@@ -0,0 +1,446 @@
+package com.example.aiapp.service;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+import com.example.aiapp.client.GroqClient;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Pool of OpenAI-compatible upstreams (endpoint, API key and model, with a
+ * weight), so that load is spread over several keys' rate limits.
+ *
+ * Each call goes to the member with the lowest expected cost: its latency
+ * EWMA (failures count as {@code ai.upstream.failure-penalty-ms}; a member
+ * not measured yet, or not in the last {@code probe-interval-ms}, gets the
+ * next call so that a stale estimate cannot keep it idle) times its calls in
+ * flight plus one, divided by its weight and by the share of its quota
+ * left, as reported in the {@code x-ratelimit-*} response headers.
+ * Members are skipped while their quota is used up (until the reported
+ * reset, or after a 429 until its {@code Retry-After}), and ejected for
+ * {@code ai.upstream.eject-ms}, doubling up to {@code max-eject-ms}, after
+ * {@code eject-after-failures} upstream failures in a row. If that leaves no
+ * member, all of them are used anyway, so that a pool-wide outage is left
+ * to the retry policy and circuit breaker rather than failing every call.
+ *
+ * Members are listed in {@code ai.upstream.members}; each one's
+ * {@code ai.upstream.<name>.url}, {@code .api-key}, {@code .model} and
+ * {@code .weight} default to the single {@code groq.api.*} upstream.
+ */
+@Component
+public class UpstreamPool {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamPool.class);
+
+    // Groq/OpenAI reset durations: "7.66s", "2m59.56s", "1h2m", "120ms"
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    // least share of quota assumed left, so a nearly drained key is not
+    // weighted to infinity before it is actually exhausted
+    private static final double MIN_HEADROOM = 0.05;
+
+    /**
+     * One configured upstream.
+     */
+    public record Endpoint(String name, String url, String apiKey, String model, int weight) {
+    }
+
+    private final List<Member> members;
+    private final String modelKey;
+    private final double ewmaAlpha;
+    private final long initialLatencyNanos;
+    private final long failurePenaltyNanos;
+    private final int ejectAfterFailures;
+    private final long ejectNanos;
+    private final long maxEjectNanos;
+    private final long quotaCooldownNanos;
+    private final long probeIntervalNanos;
+    private final LongSupplier clock;
+
+    @Autowired
+    public UpstreamPool(
+            JsonMapper jsonMapper,
+            Environment environment,
+            @Value("${ai.upstream.members:}") String members,
+            @Value("${groq.api.url:https://api.groq.com/openai/v1/chat/completions}") String defaultUrl,
+            @Value("${groq.api.key}") String defaultApiKey,
+            @Value("${ai.upstream.default-model:llama-3.1-8b-instant}") String defaultModel,
+            @Value("${groq.client.max-connections:50}") int maxConnections,
+            @Value("${groq.client.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${groq.client.read-timeout-ms:60000}") long readTimeoutMs,
+            @Value("${ai.upstream.ewma-alpha:0.3}") double ewmaAlpha,
+            @Value("${ai.upstream.initial-latency-ms:500}") long initialLatencyMs,
+            @Value("${ai.upstream.failure-penalty-ms:5000}") long failurePenaltyMs,
+            @Value("${ai.upstream.eject-after-failures:3}") int ejectAfterFailures,
+            @Value("${ai.upstream.eject-ms:30000}") long ejectMs,
+            @Value("${ai.upstream.max-eject-ms:300000}") long maxEjectMs,
+            @Value("${ai.upstream.quota-cooldown-ms:10000}") long quotaCooldownMs,
+            @Value("${ai.upstream.probe-interval-ms:10000}") long probeIntervalMs) {
+        this(jsonMapper, endpoints(environment, members, defaultUrl, defaultApiKey, defaultModel),
+                GroqClient.httpClient(maxConnections, connectTimeoutMs), readTimeoutMs,
+                ewmaAlpha, initialLatencyMs, failurePenaltyMs, ejectAfterFailures, ejectMs, maxEjectMs,
+                quotaCooldownMs, probeIntervalMs, System::nanoTime);
+    }
+
+    UpstreamPool(JsonMapper jsonMapper, List<Endpoint> endpoints, HttpClient httpClient, long readTimeoutMs,
+            double ewmaAlpha, long initialLatencyMs, long failurePenaltyMs, int ejectAfterFailures,
+            long ejectMs, long maxEjectMs, long quotaCooldownMs, long probeIntervalMs, LongSupplier clock) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one upstream is required");
+        }
+        this.ewmaAlpha = ewmaAlpha;
+        this.initialLatencyNanos = TimeUnit.MILLISECONDS.toNanos(initialLatencyMs);
+        this.failurePenaltyNanos = TimeUnit.MILLISECONDS.toNanos(failurePenaltyMs);
+        this.ejectAfterFailures = Math.max(1, ejectAfterFailures);
+        this.ejectNanos = TimeUnit.MILLISECONDS.toNanos(ejectMs);
+        this.maxEjectNanos = TimeUnit.MILLISECONDS.toNanos(maxEjectMs);
+        this.quotaCooldownNanos = TimeUnit.MILLISECONDS.toNanos(quotaCooldownMs);
+        this.probeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(probeIntervalMs);
+        this.clock = clock;
+
+        List<Member> pool = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            pool.add(new Member(endpoint, jsonMapper, httpClient, readTimeoutMs));
+        }
+        this.members = List.copyOf(pool);
+        this.modelKey = String.join(",", endpoints.stream().map(Endpoint::model).distinct().sorted().toList());
+
+        log.info("Upstream pool: {}", endpoints.stream()
+                .map(e -> e.name() + " (" + e.model() + ", weight " + e.weight() + ")").toList());
+    }
+
+    /**
+     * Identifies the pool's models, for cache keys: members are assumed to be
+     * interchangeable, so any of them may serve a cached answer.
+     */
+    public String modelKey() {
+        return modelKey;
+    }
+
+    /**
+     * Runs one upstream call on the best member right now, and learns from
+     * its outcome. Errors propagate unchanged.
+     */
+    public <T> T execute(Function<Member, T> call) {
+        Member member = acquire();
+        long start = clock.getAsLong();
+        try {
+            T result = call.apply(member);
+            onSuccess(member, clock.getAsLong() - start);
+            return result;
+        } catch (RuntimeException e) {
+            onFailure(member, e);
+            throw e;
+        } finally {
+            // errors too, or the member would look busy for good
+            release(member);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        List<Map<String, Object>> memberStats = new ArrayList<>();
+        long now = clock.getAsLong();
+        synchronized (this) {
+            for (Member member : members) {
+                memberStats.add(member.stats(now));
+            }
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("members", memberStats);
+        stats.put("ejectAfterFailures", ejectAfterFailures);
+        stats.put("ewmaAlpha", ewmaAlpha);
+        return stats;
+    }
+
+    // ================= SELECTION =================
+
+    private synchronized Member acquire() {
+        long now = clock.getAsLong();
+
+        Member best = pick(now, true);
+        if (best == null) {
+            // every member ejected or out of quota: better to try one than to fail outright
+            best = pick(now, false);
+        }
+        best.inFlight++;
+        best.requests++;
+        return best;
+    }
+
+    // lowest cost wins; among equal costs (e.g. members due a probe) the one
+    // measured longest ago, then a random one so idle equals share the load
+    private Member pick(long now, boolean healthyOnly) {
+        Member best = null;
+        double bestCost = Double.MAX_VALUE;
+        int offset = ThreadLocalRandom.current().nextInt(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            Member member = members.get((offset + i) % members.size());
+            if (healthyOnly && !member.available(now)) {
+                continue;
+            }
+            double cost = member.cost(now);
+            if (cost < bestCost || (cost == bestCost && member.lastSampleAt < best.lastSampleAt)) {
+                best = member;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private synchronized void release(Member member) {
+        member.inFlight--;
+    }
+
+    private synchronized void onSuccess(Member member, long latencyNanos) {
+        member.record(latencyNanos, clock.getAsLong());
+        member.consecutiveFailures = 0;
+        member.ejections = 0;
+        member.ejectedUntil = 0;
+    }
+
+    private synchronized void onFailure(Member member, RuntimeException e) {
+        long now = clock.getAsLong();
+
+        if (e instanceof RestClientResponseException response && response.getStatusCode().value() == 429) {
+            // out of quota rather than unhealthy
+            member.throttled++;
+            if (response.getResponseHeaders() != null) {
+                member.requestQuota.update(response.getResponseHeaders(), "requests", now);
+                member.tokenQuota.update(response.getResponseHeaders(), "tokens", now);
+            }
+            long cooldown = retryAfterNanos(response.getResponseHeaders());
+            member.quotaBlockedUntil = now + (cooldown > 0 ? cooldown : quotaCooldownNanos);
+            return;
+        }
+        if (!AiRetryPolicy.isUpstreamFailure(e)) {
+            return;
+        }
+
+        member.failures++;
+        member.record(Math.max(failurePenaltyNanos, member.ewmaNanos), now);
+        // back from an ejection, one failure is enough to go out again, for longer
+        boolean onProbation = member.ejections > 0;
+        if ((++member.consecutiveFailures >= ejectAfterFailures || onProbation) && member.ejectedUntil <= now) {
+            long duration = Math.min(maxEjectNanos, ejectNanos << Math.min(member.ejections, 20));
+            member.ejections++;
+            member.ejectedUntil = now + duration;
+            member.consecutiveFailures = 0;
+            log.warn("Upstream {} ejected for {} ms", member.name(), TimeUnit.NANOSECONDS.toMillis(duration));
+        }
+    }
+
+    private synchronized void onHeaders(Member member, HttpHeaders headers) {
+        long now = clock.getAsLong();
+        member.requestQuota.update(headers, "requests", now);
+        member.tokenQuota.update(headers, "tokens", now);
+    }
+
+    // ================= MEMBERS =================
+
+    /**
+     * One upstream of the pool. All mutable state is guarded by the pool.
+     */
+    public final class Member {
+
+        private final Endpoint endpoint;
+        private final GroqClient client;
+
+        private long ewmaNanos;
+        private long lastSampleAt;
+        private int inFlight;
+        private int consecutiveFailures;
+        private int ejections;
+        private long ejectedUntil;
+        private long quotaBlockedUntil;
+        private final Quota requestQuota = new Quota();
+        private final Quota tokenQuota = new Quota();
+
+        private long requests;
+        private long failures;
+        private long throttled;
+
+        private Member(Endpoint endpoint, JsonMapper jsonMapper, HttpClient httpClient, long readTimeoutMs) {
+            this.endpoint = endpoint;
+            this.client = new GroqClient(jsonMapper, httpClient, endpoint.url(), endpoint.apiKey(), readTimeoutMs,
+                    headers -> onHeaders(this, headers));
+        }
+
+        public String name() {
+            return endpoint.name();
+        }
+
+        public String model() {
+            return endpoint.model();
+        }
+
+        public GroqClient client() {
+            return client;
+        }
+
+        private boolean available(long now) {
+            return ejectedUntil <= now && quotaBlockedUntil <= now
+                    && !requestQuota.exhausted(now) && !tokenQuota.exhausted(now);
+        }
+
+        private double cost(long now) {
+            if (inFlight == 0 && (lastSampleAt == 0 || now - lastSampleAt > probeIntervalNanos)) {
+                // never measured, or not lately: send it one call to find out
+                return 0;
+            }
+            double latency = ewmaNanos > 0 ? ewmaNanos : initialLatencyNanos;
+            double headroom = Math.max(MIN_HEADROOM,
+                    Math.min(requestQuota.headroom(now), tokenQuota.headroom(now)));
+            return latency * (inFlight + 1) / (Math.max(1, endpoint.weight()) * headroom);
+        }
+
+        private void record(long latencyNanos, long now) {
+            lastSampleAt = now;
+            ewmaNanos = ewmaNanos == 0
+                    ? latencyNanos
+                    : (long) (ewmaAlpha * latencyNanos + (1 - ewmaAlpha) * ewmaNanos);
+        }
+
+        private Map<String, Object> stats(long now) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", endpoint.name());
+            stats.put("model", endpoint.model());
+            stats.put("weight", endpoint.weight());
+            stats.put("available", available(now));
+            stats.put("ewmaMs", TimeUnit.NANOSECONDS.toMillis(ewmaNanos));
+            stats.put("inFlight", inFlight);
+            stats.put("requests", requests);
+            stats.put("failures", failures);
+            stats.put("throttled", throttled);
+            stats.put("ejectedForMs", Math.max(0, TimeUnit.NANOSECONDS.toMillis(ejectedUntil - now)));
+            stats.put("remainingRequests", requestQuota.remaining);
+            stats.put("remainingTokens", tokenQuota.remaining);
+            return stats;
+        }
+    }
+
+    /**
+     * Last reported {@code x-ratelimit-limit-<kind>},
+     * {@code x-ratelimit-remaining-<kind>} and {@code x-ratelimit-reset-<kind>};
+     * unknown (-1) until a response carries them.
+     */
+    private static final class Quota {
+        private long limit = -1;
+        private long remaining = -1;
+        private long resetAt;
+
+        void update(HttpHeaders headers, String kind, long now) {
+            long newRemaining = parseLong(headers.getFirst("x-ratelimit-remaining-" + kind));
+            if (newRemaining < 0) {
+                return;
+            }
+            remaining = newRemaining;
+            limit = parseLong(headers.getFirst("x-ratelimit-limit-" + kind));
+            long reset = parseDurationNanos(headers.getFirst("x-ratelimit-reset-" + kind));
+            resetAt = reset >= 0 ? now + reset : 0;
+        }
+
+        boolean exhausted(long now) {
+            return remaining == 0 && resetAt > now;
+        }
+
+        double headroom(long now) {
+            if (remaining < 0 || limit <= 0 || resetAt <= now) {
+                return 1;
+            }
+            return Math.min(1, (double) remaining / limit);
+        }
+    }
+
+    // ================= CONFIG / HEADERS =================
+
+    static List<Endpoint> endpoints(Environment environment, String members, String defaultUrl,
+            String defaultApiKey, String defaultModel) {
+        List<String> names = Arrays.stream(members.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .toList();
+        if (names.isEmpty()) {
+            return List.of(new Endpoint("default", defaultUrl, defaultApiKey, defaultModel, 1));
+        }
+
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String name : names) {
+            String prefix = "ai.upstream." + name + ".";
+            endpoints.add(new Endpoint(name,
+                    environment.getProperty(prefix + "url", defaultUrl),
+                    environment.getProperty(prefix + "api-key", defaultApiKey),
+                    environment.getProperty(prefix + "model", defaultModel),
+                    environment.getProperty(prefix + "weight", Integer.class, 1)));
+        }
+        return endpoints;
+    }
+
+    /**
+     * Parses a rate-limit reset such as {@code 2m59.56s}.
+     *
+     * @return the duration in nanoseconds, or -1 if absent or unreadable
+     */
+    static long parseDurationNanos(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        int end = 0;
+        while (matcher.find()) {
+            if (matcher.start() != end) {
+                return -1;
+            }
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+            end = matcher.end();
+        }
+        return end == value.trim().length() && end > 0 ? (long) (millis * 1_000_000) : -1;
+    }
+
+    private static long retryAfterNanos(HttpHeaders headers) {
+        if (headers == null) {
+            return 0;
+        }
+        long seconds = parseLong(headers.getFirst(HttpHeaders.RETRY_AFTER));
+        return seconds > 0 ? TimeUnit.SECONDS.toNanos(seconds) : 0;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
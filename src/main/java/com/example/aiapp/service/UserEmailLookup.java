@@ -0,0 +1,82 @@
+package com.example.aiapp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.aiapp.dto.UserEmailView;
+import com.example.aiapp.repository.UserRepository;
+
+/**
+ * Resolves user ids to emails for admin views. Ids not found in the small
+ * in-memory cache are loaded with a single {@code IN} query, so a listing of
+ * N rows costs at most one user query instead of N.
+ */
+@Component
+public class UserEmailLookup {
+
+    private final UserRepository userRepository;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<Long, Entry> cache = new ConcurrentHashMap<>();
+
+    public UserEmailLookup(
+            UserRepository userRepository,
+            @Value("${admin.user-lookup.max-entries:1000}") int maxEntries,
+            @Value("${admin.user-lookup.ttl-seconds:60}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Returns the email of every id that belongs to an existing user. Ids of
+     * deleted users are simply absent from the result.
+     */
+    public Map<Long, String> emailsFor(Collection<Long> ids) {
+        Map<Long, String> emails = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long now = System.nanoTime();
+
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Entry entry = cache.get(id);
+            if (entry != null && entry.expiresAt - now > 0) {
+                emails.put(id, entry.email);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            if (cache.size() + missing.size() > maxEntries) {
+                cache.clear();
+            }
+
+            for (UserEmailView user : userRepository.findEmailsByIdIn(missing)) {
+                emails.put(user.getId(), user.getEmail());
+                cache.put(user.getId(), new Entry(user.getEmail(), now + ttlNanos));
+            }
+        }
+
+        return emails;
+    }
+
+    /**
+     * Drops a cached email, e.g. after the user was deleted or changed it.
+     */
+    public void evict(Long id) {
+        cache.remove(id);
+    }
+
+    private record Entry(String email, long expiresAt) {
+    }
+}
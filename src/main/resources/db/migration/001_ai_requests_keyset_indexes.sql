@@ -0,0 +1,6 @@
+-- Keyset pagination on (created_at, id) for /ai/history/scroll and /admin/requests/scroll.
+-- spring.jpa.hibernate.ddl-auto=validate does not create indexes; apply manually.
+
+CREATE INDEX idx_ai_requests_user_created_id ON ai_requests (user_id, created_at, id);
+
+CREATE INDEX idx_ai_requests_created_id ON ai_requests (created_at, id);
@@ -0,0 +1,9 @@
+-- Token usage and latency per AI request.
+-- ddl-auto=validate does not add columns; apply before deploying.
+-- Existing rows keep NULLs, which the usage rollups treat as "no upstream call recorded".
+
+ALTER TABLE ai_requests
+    ADD COLUMN prompt_tokens INT NULL,
+    ADD COLUMN completion_tokens INT NULL,
+    ADD COLUMN upstream_time_ms INT NULL,
+    ADD COLUMN latency_ms INT NULL;
@@ -166,7 +166,10 @@
 
         fetch('/auth/update', {
             method: 'PUT',
-            headers: { 'Content-Type': 'application/json' },
+            headers: {
+                'Content-Type': 'application/json',
+                'Authorization': `Bearer ${user.token}`
+            },
             body: JSON.stringify(updatedData)
         })
             .then(function (res) {
@@ -253,7 +256,8 @@
         if (!confirmDelete) return;
 
         fetch(`/auth/delete/${user.id}`, {
-            method: 'DELETE'
+            method: 'DELETE',
+            headers: { 'Authorization': `Bearer ${user.token}` }
         })
             .then(res => {
                 if (!res.ok) {
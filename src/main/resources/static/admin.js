@@ -64,8 +64,11 @@
     async function api(url, options = {}) {
 
         const res = await fetch(url, {
-            headers: { "Content-Type": "application/json" },
-            ...options
+            ...options,
+            headers: {
+                "Content-Type": "application/json",
+                "Authorization": `Bearer ${currentAdmin.token}`
+            }
         });
 
         if (!res.ok) {
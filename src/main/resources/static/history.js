@@ -4,6 +4,7 @@
     let currentPage = 0;
     const PAGE_SIZE = 5;
     let isLoading = false;
+    let currentQuery = '';
 
     const elements = {
         list: document.getElementById('full-history-list'),
@@ -44,6 +45,10 @@
         }
     }
 
+    function authHeaders(user) {
+        return { 'Authorization': `Bearer ${user.token}` };
+    }
+
     async function loadHistory(page = 0) {
         if (isLoading) return;
 
@@ -52,18 +57,32 @@
 
         setLoading(true);
         currentPage = page;
+        const query = currentQuery;
 
         try {
-            const response = await fetch(
-                `/ai/history?userId=${user.id}&page=${page}&size=${PAGE_SIZE}`
-            );
+            const url = query
+                ? `/ai/history/search?userId=${user.id}&q=${encodeURIComponent(query)}&page=${page}&size=${PAGE_SIZE}`
+                : `/ai/history/summaries?userId=${user.id}&page=${page}&size=${PAGE_SIZE}`;
+            const response = await fetch(url, { headers: authHeaders(user) });
 
             if (!response.ok) throw new Error('Failed to fetch history');
 
             const pageData = await response.json();
 
-            updateStatsRow(pageData);
-            renderRecords(pageData.content || []);
+            if (query) {
+                // search hits carry snippets around the match instead of leading previews
+                const records = (pageData.content || []).map(hit => ({
+                    ...hit,
+                    inputPreview: hit.inputSnippet,
+                    outputPreview: hit.outputSnippet
+                }));
+                renderRecords(records);
+                if (records.length === 0) showSearchEmpty(query);
+                highlightPreviews(query);
+            } else {
+                updateStatsRow(pageData);
+                renderRecords(pageData.content || []);
+            }
             renderPagination(pageData);
 
         } catch (error) {
@@ -72,58 +91,46 @@
         } finally {
             setLoading(false);
         }
+
+        // the search box changed while this page was loading
+        if (query !== currentQuery) loadHistory(0);
     }
 
     function handleSearchDebounced() {
         clearTimeout(this.timeout);
         this.timeout = setTimeout(() => {
-            const query = elements.searchInput.value.trim().toLowerCase();
-            const cards = elements.list.querySelectorAll('.history-card');
-            let visibleCount = 0;
-
-            // Remove existing search empty state if any
-            const existingEmpty = elements.list.querySelector('.search-empty-state');
-            if (existingEmpty) existingEmpty.remove();
-
-            cards.forEach(card => {
-                const promptPreview = card.querySelector('.card-prompt-preview');
-                const fullPromptBox = card.querySelector('.full-text-box'); // In details view
-                const originalPrompt = card.dataset.originalPrompt || '';
-
-                if (originalPrompt.toLowerCase().includes(query)) {
-                    card.style.display = '';
-                    visibleCount++;
-
-                    if (query !== '') {
-                        const highlighted = highlight(originalPrompt, query);
-                        promptPreview.innerHTML = truncate(highlighted, 150); // Allowing more for tags
-                        if (fullPromptBox) fullPromptBox.innerHTML = highlighted;
-                    } else {
-                        promptPreview.textContent = truncate(originalPrompt, 100);
-                        if (fullPromptBox) fullPromptBox.textContent = originalPrompt;
-                    }
-                } else {
-                    card.style.display = 'none';
-                }
-            });
-
-            if (visibleCount === 0 && cards.length > 0) {
-                elements.list.insertAdjacentHTML('beforeend', `
-                    <div class="state-container search-empty-state" style="padding: 60px 20px; border: 2px dashed rgba(var(--ds-gray-200-rgb), 0.5); border-radius: 20px; margin-top: 20px;">
-                        <i class="fa-solid fa-magnifying-glass" style="font-size: 2rem; color: var(--ds-gray-200); margin-bottom: 20px;"></i>
-                        <h3 class="state-title">No matches found</h3>
-                        <p class="state-description">We couldn't find any interactions matching "<strong>${escapeHtml(query)}</strong>".</p>
-                        <button class="btn btn-ghost-sm" style="margin-top: 16px;" onclick="document.getElementById('history-search').value=''; document.getElementById('history-search').dispatchEvent(new Event('input'))">Clear Search</button>
-                    </div>
-                `);
-            }
+            const query = elements.searchInput.value.trim();
+            if (query === currentQuery) return;
+            currentQuery = query;
+            loadHistory(0);
         }, 250);
     }
 
-    function highlight(text, query) {
-        if (!query) return escapeHtml(text);
-        const escaped = query.replace(/[.*+?^${}()|[\]\\]/g, '\\$&');
-        const regex = new RegExp(`(${escaped})`, 'gi');
+    function showSearchEmpty(query) {
+        elements.list.innerHTML = `
+            <div class="state-container search-empty-state" style="padding: 60px 20px; border: 2px dashed rgba(var(--ds-gray-200-rgb), 0.5); border-radius: 20px; margin-top: 20px;">
+                <i class="fa-solid fa-magnifying-glass" style="font-size: 2rem; color: var(--ds-gray-200); margin-bottom: 20px;"></i>
+                <h3 class="state-title">No matches found</h3>
+                <p class="state-description">We couldn't find any interactions matching "<strong>${escapeHtml(query)}</strong>".</p>
+                <button class="btn btn-ghost-sm" style="margin-top: 16px;" onclick="document.getElementById('history-search').value=''; document.getElementById('history-search').dispatchEvent(new Event('input'))">Clear Search</button>
+            </div>
+        `;
+    }
+
+    function highlightPreviews(query) {
+        const words = query.split(/[^\p{L}\p{N}]+/u).filter(w => w.length > 1);
+        if (words.length === 0) return;
+
+        elements.list.querySelectorAll('.history-card').forEach(card => {
+            const promptPreview = card.querySelector('.card-prompt-preview');
+            promptPreview.innerHTML = highlight(truncate(card.dataset.originalPrompt || '', 100), words);
+        });
+    }
+
+    function highlight(text, words) {
+        if (!words.length) return escapeHtml(text);
+        const escaped = words.map(w => escapeHtml(w).replace(/[.*+?^${}()|[\]\\]/g, '\\$&'));
+        const regex = new RegExp(`(${escaped.join('|')})`, 'gi');
         return escapeHtml(text).replace(regex, '<mark class="search-highlight">$1</mark>');
     }
 
@@ -153,7 +160,8 @@
             const card = document.createElement('article');
             card.className = 'history-card';
 
-            const prompt = item.input || '';
+            // List rows only carry previews; full text is fetched on first expand
+            const prompt = item.inputPreview || '';
             const truncatedPrompt = truncate(prompt, 100);
             card.dataset.searchText = prompt.toLowerCase();
             card.dataset.originalPrompt = prompt;
@@ -164,6 +172,8 @@
                 hour: '2-digit', minute: '2-digit'
             });
 
+            const tokens = (item.promptTokens || 0) + (item.completionTokens || 0);
+
             const action = (item.action || 'AI').toLowerCase();
             let badgeStyle = 'background: #f1f5f9; color: #475569;';
             if (action.includes('sum')) badgeStyle = 'background: #eff6ff; color: #3b82f6;';
@@ -177,6 +187,7 @@
                         <div class="card-meta">
                             <span class="card-badge" style="${badgeStyle}">${action}</span>
                             <span>${formattedDate}</span>
+                            ${tokens ? `<span title="Prompt + completion tokens">${tokens} tokens</span>` : ''}
                         </div>
                     </div>
                     <div class="card-actions-row">
@@ -197,7 +208,7 @@
                         <div class="detail-section">
                             <div class="detail-section-label"><i class="fa-solid fa-robot"></i> AI Response</div>
                             <div class="ai-response-box">
-                                <div class="full-text-box">${escapeHtml(item.output)}</div>
+                                <div class="full-text-box">${escapeHtml(item.outputPreview)}</div>
                             </div>
                         </div>
                     </div>
@@ -212,11 +223,13 @@
                 }
             });
             toggleBtn.addEventListener('click', () => toggleExpand(card, toggleBtn));
+            card.dataset.id = item.id;
 
             // Copy logic
-            card.querySelector('.btn-copy').addEventListener('click', (e) => {
+            card.querySelector('.btn-copy').addEventListener('click', async (e) => {
                 e.stopPropagation();
-                copyText(item.output, card.querySelector('.btn-copy'));
+                const full = await loadFullRecord(card);
+                copyText(full ? full.output : item.outputPreview, card.querySelector('.btn-copy'));
             });
 
             // Delete logic
@@ -237,6 +250,36 @@
         const isExpanded = card.classList.toggle('is-expanded');
         btn.textContent = isExpanded ? 'Hide' : 'View Details';
         btn.classList.toggle('active', isExpanded);
+        if (isExpanded) loadFullRecord(card);
+    }
+
+    /**
+     * Fetches the full prompt and response for a card once, then fills the details view.
+     */
+    async function loadFullRecord(card) {
+        if (card.fullRecord) return card.fullRecord;
+
+        const user = getUser();
+        if (!user) return null;
+
+        try {
+            const response = await fetch(`/ai/history/${card.dataset.id}?userId=${user.id}`, {
+                headers: authHeaders(user)
+            });
+            if (!response.ok) throw new Error('Failed to fetch history entry');
+
+            const record = await response.json();
+            card.fullRecord = record;
+            card.dataset.originalPrompt = record.input || '';
+
+            const boxes = card.querySelectorAll('.card-details .full-text-box');
+            if (boxes[0]) boxes[0].textContent = record.input || '';
+            if (boxes[1]) boxes[1].textContent = record.output || '';
+            return record;
+        } catch (err) {
+            console.error(err);
+            return null;
+        }
     }
 
     function copyText(text, btn) {
@@ -254,7 +297,10 @@
 
     async function deleteRecord(id, card) {
         try {
-            const response = await fetch(`/ai/history/${id}`, { method: 'DELETE' });
+            const response = await fetch(`/ai/history/${id}`, {
+                method: 'DELETE',
+                headers: authHeaders(getUser() || {})
+            });
             if (response.ok) {
                 card.style.opacity = '0';
                 card.style.transform = 'translateX(20px)';
@@ -0,0 +1,52 @@
+package com.example.aiapp.config;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.aiapp.entity.User;
+import com.example.aiapp.security.TokenService;
+
+@SpringBootTest(properties = {
+        "metrics.scrape-token=scrape-secret",
+        "management.endpoints.web.exposure.include=health,prometheus"})
+@AutoConfigureMockMvc
+class PrometheusScrapeSecurityTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Test
+    void scrapeNeedsTheScrapeTokenOrAnAdmin() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, "Bearer wrong-secret"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION,
+                        bearer(new User(2L, "User", "user@example.com", "hash", "USER"))))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, "Bearer scrape-secret"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION,
+                        bearer(new User(1L, "Admin", "admin@example.com", "hash", "ADMIN"))))
+                .andExpect(status().isOk());
+
+        // health stays open for load balancers
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+
+    private String bearer(User user) {
+        return "Bearer " + tokenService.issue(user);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.aiapp.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SecurityConfigTests {
+
+    @Test
+    void calibratesTheHighestCostWithinTheTargetHashTime() {
+        // 10 ms at cost 10: cost 14 takes 160 ms, cost 15 would take 320 ms
+        assertThat(SecurityConfig.bcryptStrengthFor(10, 250)).isEqualTo(14);
+        assertThat(SecurityConfig.bcryptStrengthFor(20, 320)).isEqualTo(14);
+
+        // never below the library default, nor above the cap
+        assertThat(SecurityConfig.bcryptStrengthFor(400, 250)).isEqualTo(10);
+        assertThat(SecurityConfig.bcryptStrengthFor(0.1, 3_600_000)).isEqualTo(16);
+    }
+
+    @Test
+    void pinnedStrengthSkipsCalibration() {
+        String hash = new SecurityConfig().passwordEncoder(5, 250).encode("secret");
+
+        assertThat(hash).startsWith("$2a$05$");
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.aiapp.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.aiapp.dto.AdminRequestRowDto;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.entity.User;
+import com.example.aiapp.repository.AiRequestRepository;
+import com.example.aiapp.repository.UserRepository;
+import com.example.aiapp.security.AuthenticatedUser;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class AdminControllerQueryCountTests {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AiRequestRepository aiRequestRepository;
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void requestPageCostsConstantStatements() {
+        User admin = entityManager.persist(new User(null, "Admin", "admin@example.com", "hash", "ADMIN"));
+        List<User> users = List.of(
+                entityManager.persist(new User(null, "A", "a@example.com", "hash", "USER")),
+                entityManager.persist(new User(null, "B", "b@example.com", "hash", "USER")),
+                entityManager.persist(new User(null, "C", "c@example.com", "hash", "USER")));
+
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            AiRequest request = new AiRequest();
+            request.setInputText("input " + i);
+            request.setAction("EXPLAIN");
+            request.setOutput("output " + i);
+            request.setUserId(users.get(i % users.size()).getId());
+            entityManager.persist(request);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        AdminController controller = new AdminController();
+        ReflectionTestUtils.setField(controller, "userRepository", userRepository);
+        ReflectionTestUtils.setField(controller, "aiRequestRepository", aiRequestRepository);
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(admin.getId(), "admin@example.com", "ADMIN", Instant.now()), null, List.of()));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Map<String, Object> page = controller.getRequests(admin.getId(), 0, PAGE_SIZE);
+
+        // page query + count query, independent of the page size; the admin
+        // check reads the token and costs no statement
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        @SuppressWarnings("unchecked")
+        List<AdminRequestRowDto> rows = (List<AdminRequestRowDto>) page.get("content");
+        assertThat(rows).hasSize(PAGE_SIZE);
+        assertThat(rows).extracting(AdminRequestRowDto::getUserEmail)
+                .containsOnly("a@example.com", "b@example.com", "c@example.com");
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.aiapp.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+import com.example.aiapp.entity.User;
+import com.example.aiapp.exception.GlobalExceptionHandler;
+import com.example.aiapp.repository.UserRepository;
+import com.example.aiapp.security.AuthenticatedUser;
+import com.example.aiapp.security.TokenService;
+import com.example.aiapp.service.AiBulkhead;
+import com.example.aiapp.service.AiRateLimiter;
+import com.example.aiapp.service.GeminiService;
+import com.example.aiapp.service.PasswordHashingService;
+
+/**
+ * Saturates the AI path with slow upstream calls on a small "servlet" pool and
+ * checks that /auth/login is still served promptly and that overflow AI calls
+ * are shed with 503 by the bulkhead.
+ */
+class AiIsolationLoadTests {
+
+    private static final int SERVLET_THREADS = 4;
+    private static final int AI_REQUESTS = 40;
+
+    private final CountDownLatch upstreamRelease = new CountDownLatch(1);
+    private final AiBulkhead bulkhead = new AiBulkhead(4, 4, 100);
+
+    private ExecutorService servletPool;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        GeminiService geminiService = mock(GeminiService.class);
+        when(geminiService.process(anyString(), anyString(), any(), anyBoolean()))
+                .thenAnswer(inv -> bulkhead.execute(() -> {
+                    awaitRelease();
+                    return Map.of("output", "ok");
+                }));
+
+        AiController aiController = new AiController(geminiService);
+        ReflectionTestUtils.setField(aiController, "geminiService", geminiService);
+        ReflectionTestUtils.setField(aiController, "aiProcessExecutor", new SimpleAsyncTaskExecutor("ai-test-"));
+        ReflectionTestUtils.setField(aiController, "asyncEnabled", true);
+        ReflectionTestUtils.setField(aiController, "aiRateLimiter", new AiRateLimiter(false, 0, 0, 0, 0, 0, 0));
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail("user@example.com"))
+                .thenReturn(Optional.of(new User(1L, "User", "user@example.com", "hash", "USER")));
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.matches(any(), any())).thenReturn(true);
+
+        AuthController authController = new AuthController();
+        ReflectionTestUtils.setField(authController, "userRepository", userRepository);
+        ReflectionTestUtils.setField(authController, "passwordHashingService",
+                new PasswordHashingService(passwordEncoder, 2, 10, 1000, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(authController, "tokenService",
+                new TokenService(JsonMapper.builder().build(), "test-secret", 60));
+
+        mockMvc = MockMvcBuilders.standaloneSetup(aiController, authController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        servletPool = Executors.newFixedThreadPool(SERVLET_THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstreamRelease.countDown();
+        servletPool.shutdownNow();
+    }
+
+    @Test
+    void authStaysResponsiveWhileAiPathIsSaturated() throws Exception {
+        List<Future<MvcResult>> aiCalls = new ArrayList<>();
+        for (int i = 0; i < AI_REQUESTS; i++) {
+            aiCalls.add(servletPool.submit(() -> {
+                // what TokenAuthenticationFilter would have set for user 1
+                SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                        new AuthenticatedUser(1L, "user@example.com", "USER", Instant.now()), null, List.of()));
+                try {
+                    return mockMvc.perform(post("/ai/process")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"text\":\"hello\",\"action\":\"EXPLAIN\",\"userId\":1}"))
+                            .andReturn();
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            }));
+        }
+
+        // every upstream permit is held by a blocked call
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((int) bulkhead.stats().get("active") < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(bulkhead.stats().get("active")).isEqualTo(4);
+
+        long start = System.nanoTime();
+        MvcResult login = servletPool.submit(() -> mockMvc.perform(post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"user@example.com\",\"password\":\"secret\"}"))
+                .andReturn()).get(2, TimeUnit.SECONDS);
+        long loginMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(login.getResponse().getStatus()).isEqualTo(200);
+        assertThat(loginMillis).isLessThan(1000);
+
+        upstreamRelease.countDown();
+
+        int ok = 0;
+        int shed = 0;
+        for (Future<MvcResult> call : aiCalls) {
+            MvcResult started = call.get(5, TimeUnit.SECONDS);
+            started.getAsyncResult(5_000);
+            int status = mockMvc.perform(asyncDispatch(started)).andReturn().getResponse().getStatus();
+            if (status == 200) {
+                ok++;
+            } else if (status == 503) {
+                shed++;
+            }
+        }
+
+        assertThat(ok).isGreaterThanOrEqualTo(4);
+        assertThat(shed).isGreaterThan(0);
+        assertThat(ok + shed).isEqualTo(AI_REQUESTS);
+    }
+
+    private void awaitRelease() {
+        try {
+            upstreamRelease.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.aiapp.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.aiapp.entity.User;
+import com.example.aiapp.repository.UserRepository;
+import com.example.aiapp.security.TokenService;
+import com.example.aiapp.service.PasswordHashingService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Login upgrades a hash made with an old cost in the background, committed
+ * on its own, so these tests run outside the test transaction.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuthControllerRehashTests {
+
+    private final BCryptPasswordEncoder oldEncoder = new BCryptPasswordEncoder(4);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private PasswordHashingService passwordHashingService;
+    private AuthController controller;
+
+    // holds back background rehashes until released
+    private final CountDownLatch rehashGate = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(5) {
+            @Override
+            protected String encodeNonNullPassword(String rawPassword) {
+                // not the cost probe run by the constructor
+                if (Thread.currentThread().getName().startsWith("password-hash-")) {
+                    try {
+                        rehashGate.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.encodeNonNullPassword(rawPassword);
+            }
+        };
+        passwordHashingService = new PasswordHashingService(encoder, 1, 10, 10_000, new SimpleMeterRegistry());
+        controller = new AuthController();
+        ReflectionTestUtils.setField(controller, "userRepository", userRepository);
+        ReflectionTestUtils.setField(controller, "passwordHashingService", passwordHashingService);
+        ReflectionTestUtils.setField(controller, "tokenService",
+                new TokenService(JsonMapper.builder().build(), "test-secret", 60));
+    }
+
+    @AfterEach
+    void tearDown() {
+        rehashGate.countDown();
+        ReflectionTestUtils.invokeMethod(passwordHashingService, "shutdown");
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void loginRehashesAnOldCostHash() throws InterruptedException {
+        Long id = userRepository.save(new User(null, "User", "user@example.com", oldEncoder.encode("secret"), "USER"))
+                .getId();
+
+        controller.login(credentials("secret"));
+        rehashGate.countDown();
+        awaitRehashes(1);
+
+        String stored = userRepository.findById(id).orElseThrow().getPassword();
+        assertThat(stored).startsWith("$2a$05$");
+        assertThat(controller.login(credentials("secret")).getToken()).isNotBlank();
+    }
+
+    @Test
+    void lateRehashDoesNotUndoAPasswordChange() throws InterruptedException {
+        Long id = userRepository.save(new User(null, "User", "user@example.com", oldEncoder.encode("secret"), "USER"))
+                .getId();
+
+        controller.login(credentials("secret"));
+
+        // the password is changed (as by /auth/update) while the rehash is still running
+        User user = userRepository.findById(id).orElseThrow();
+        user.setPassword(oldEncoder.encode("changed"));
+        userRepository.save(user);
+
+        rehashGate.countDown();
+        awaitRehashes(1);
+
+        String stored = userRepository.findById(id).orElseThrow().getPassword();
+        assertThat(oldEncoder.matches("changed", stored)).isTrue();
+    }
+
+    private void awaitRehashes(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((Long) passwordHashingService.stats().get("rehashed") < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(passwordHashingService.stats().get("rehashed")).isEqualTo(count);
+    }
+
+    private static User credentials(String password) {
+        User request = new User();
+        request.setEmail("user@example.com");
+        request.setPassword(password);
+        return request;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.aiapp.entity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class CompressedTextConverterTests {
+
+    private static final String LONG_TEXT = ("Connection pooling keeps a set of open connections ready for reuse, "
+            + "so each request skips the TCP and TLS handshakes. ").repeat(20) + "Ünïcödé ✓ at the end.";
+
+    private final CompressedTextConverter converter = new CompressedTextConverter(true, 512, 1);
+
+    @Test
+    void compressesLongTextAndReadsItBack() {
+        String stored = converter.convertToDatabaseColumn(LONG_TEXT);
+
+        assertThat(CompressedTextConverter.isCompressed(stored)).isTrue();
+        assertThat(stored.length()).isLessThan(LONG_TEXT.length() / 3);
+        assertThat(converter.convertToEntityAttribute(stored)).isEqualTo(LONG_TEXT);
+    }
+
+    @Test
+    void keepsShortAndLegacyValuesPlain() {
+        assertThat(converter.convertToDatabaseColumn("short answer")).isEqualTo("short answer");
+        assertThat(converter.convertToEntityAttribute("legacy row text")).isEqualTo("legacy row text");
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+
+        // a plain value that starts with the marker is escaped, not misread
+        String odd = CompressedTextConverter.MARKER + "zNot Base64";
+        String stored = converter.convertToDatabaseColumn(odd);
+        assertThat(stored).isNotEqualTo(odd);
+        assertThat(converter.convertToEntityAttribute(stored)).isEqualTo(odd);
+
+        // switched off: new values stay plain, compressed ones still read
+        CompressedTextConverter disabled = new CompressedTextConverter(false, 512, 1);
+        assertThat(disabled.encode(LONG_TEXT)).isEqualTo(LONG_TEXT);
+        assertThat(disabled.convertToEntityAttribute(converter.encode(LONG_TEXT))).isEqualTo(LONG_TEXT);
+    }
+
+    @Test
+    void previewsFromATruncatedStoredPrefix() {
+        String stored = converter.encode(LONG_TEXT);
+
+        // a cut in the middle of the compressed data still yields the start of the text
+        assertThat(CompressedTextConverter.preview(stored.substring(0, 121), 50))
+                .isEqualTo(LONG_TEXT.substring(0, 50));
+        assertThat(CompressedTextConverter.preview(stored, 200)).isEqualTo(LONG_TEXT.substring(0, 200));
+        assertThat(CompressedTextConverter.preview("plain preview", 200)).isEqualTo("plain preview");
+    }
+}
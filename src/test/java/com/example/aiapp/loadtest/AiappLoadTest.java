@@ -0,0 +1,316 @@
+package com.example.aiapp.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.example.aiapp.entity.User;
+import com.example.aiapp.repository.UserRepository;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * End-to-end load test: the whole app on a random port, backed by the
+ * embedded test database and a {@link FakeUpstreamServer}, driven with mixed
+ * traffic at a fixed arrival rate.
+ *
+ * Excluded from the normal build; run with
+ * {@code mvn -B -Pload-test test}. Settings are system properties:
+ * <ul>
+ * <li>{@code load.rate} requests per second (40), {@code load.warmup-seconds} (5),
+ *     {@code load.duration-seconds} (30), {@code load.users} (20)</li>
+ * <li>{@code load.mix} endpoint weights
+ *     ({@code process:35,stream:10,history:30,login:15,admin:10})</li>
+ * <li>{@code load.repeat-fraction} share of AI calls reusing a common input,
+ *     so some hit the response cache (0.2)</li>
+ * <li>{@code upstream.*}, see {@link FakeUpstreamServer#fromSystemProperties()}</li>
+ * <li>{@code load.output-dir} (target/load-test)</li>
+ * </ul>
+ * Any app property can be overridden the same way, e.g.
+ * {@code -Dsecurity.password.bcrypt-strength=10} for production-like logins.
+ *
+ * Each run writes a timestamped JSON report plus {@code latest.json}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // the limiter would turn most of the offered load into 429s
+        "ai.rate-limit.enabled=false",
+        "ai.async.enabled=true",
+        "logging.level.com.example.aiapp=WARN"
+})
+class AiappLoadTest {
+
+    private static final String PASSWORD = "load-test-password";
+
+    private static final List<String> COMMON_INPUTS = List.of(
+            "What is a load balancer?",
+            "Explain connection pooling.",
+            "Summarize the CAP theorem.");
+
+    private static FakeUpstreamServer upstream;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @DynamicPropertySource
+    static void upstreamUrl(DynamicPropertyRegistry registry) throws IOException {
+        upstream = FakeUpstreamServer.fromSystemProperties();
+        registry.add("groq.api.url", upstream::url);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        if (upstream != null) {
+            upstream.close();
+        }
+    }
+
+    @Test
+    void mixedTrafficAtFixedRate() throws Exception {
+        ExecutorService clientThreads = Executors.newCachedThreadPool();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clientThreads)
+                .build();
+
+        try {
+            int userCount = Integer.getInteger("load.users", 20);
+            List<String> emails = new ArrayList<>();
+            List<String> tokens = new ArrayList<>();
+            for (int i = 0; i < userCount; i++) {
+                String email = "load-user-" + i + "@example.com";
+                emails.add(email);
+                tokens.add(signup(client, email));
+            }
+            String adminToken = createAdmin(client);
+
+            double rate = Double.parseDouble(System.getProperty("load.rate", "40"));
+            double repeatFraction = Double.parseDouble(System.getProperty("load.repeat-fraction", "0.2"));
+            Map<String, Integer> mix = parseMix(System.getProperty("load.mix",
+                    "process:35,stream:10,history:30,login:15,admin:10"));
+
+            LoadGenerator generator = new LoadGenerator(rate,
+                    Long.getLong("load.warmup-seconds", 5),
+                    Long.getLong("load.duration-seconds", 30),
+                    100);
+            long measureFrom = generator.measureFromNanos();
+            EndpointStats firstToken = new EndpointStats("stream.firstToken", measureFrom);
+
+            generator
+                    .endpoint(new EndpointStats("process", measureFrom), mix.getOrDefault("process", 0),
+                            scheduled -> send(client, post("/ai/process", randomToken(tokens),
+                                    aiBody(repeatFraction))))
+                    .endpoint(new EndpointStats("stream", measureFrom), mix.getOrDefault("stream", 0),
+                            scheduled -> stream(client, post("/ai/process/stream", randomToken(tokens),
+                                    aiBody(repeatFraction)), scheduled, firstToken))
+                    .endpoint(new EndpointStats("history", measureFrom), mix.getOrDefault("history", 0),
+                            scheduled -> send(client, get("/ai/history?page=0&size=5", randomToken(tokens))))
+                    .endpoint(new EndpointStats("login", measureFrom), mix.getOrDefault("login", 0),
+                            scheduled -> send(client, post("/auth/login", null, credentials(
+                                    emails.get(ThreadLocalRandom.current().nextInt(emails.size()))))))
+                    .endpoint(new EndpointStats("admin", measureFrom), mix.getOrDefault("admin", 0),
+                            scheduled -> send(client, get("/admin/requests?page=0&size=20", adminToken)))
+                    .derived(firstToken);
+
+            generator.run(60_000);
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startedAt", LocalDateTime.now().toString());
+            report.put("java", Runtime.version().toString());
+            report.put("processors", Runtime.getRuntime().availableProcessors());
+            report.put("users", userCount);
+            report.put("mix", mix);
+            report.put("repeatFraction", repeatFraction);
+            report.put("upstream", upstream.settings());
+            report.put("upstreamStats", upstream.stats());
+            report.putAll(generator.summary());
+            report.put("server", serverStats(client, adminToken));
+
+            Path reportFile = writeReport(report);
+            System.out.println(jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+            System.out.println("Load test report: " + reportFile.toAbsolutePath());
+
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> endpoints = (Map<String, Map<String, Object>>) report.get("endpoints");
+            mix.forEach((name, weight) -> {
+                if (weight > 0) {
+                    assertThat((long) endpoints.get(name).get("ok")).as(name + " succeeded at least once")
+                            .isPositive();
+                }
+            });
+        } finally {
+            clientThreads.shutdownNow();
+        }
+    }
+
+    // ================= TRAFFIC =================
+
+    private CompletableFuture<String> send(HttpClient client, HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> String.valueOf(response.statusCode()));
+    }
+
+    /**
+     * Reads the SSE response to the end; records the time to the first
+     * {@code token} event, and reports an {@code error} event as {@code sse-error}.
+     */
+    private CompletableFuture<String> stream(HttpClient client, HttpRequest request, long scheduled,
+            EndpointStats firstToken) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        response.body().close();
+                        return String.valueOf(response.statusCode());
+                    }
+                    AtomicBoolean sawToken = new AtomicBoolean();
+                    AtomicBoolean sawError = new AtomicBoolean();
+                    response.body().forEach(line -> {
+                        if (line.startsWith("event:token") && sawToken.compareAndSet(false, true)) {
+                            firstToken.record(scheduled, System.nanoTime(), "200");
+                        } else if (line.startsWith("event:error")) {
+                            sawError.set(true);
+                        }
+                    });
+                    return sawError.get() ? "sse-error" : "200";
+                });
+    }
+
+    private String aiBody(double repeatFraction) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String text = random.nextDouble() < repeatFraction
+                ? COMMON_INPUTS.get(random.nextInt(COMMON_INPUTS.size()))
+                : "Load test input " + random.nextLong() + ": explain how request queues behave under load.";
+        String action = List.of("SUMMARIZE", "REWRITE", "EXPLAIN").get(random.nextInt(3));
+        return json(Map.of("text", text, "action", action));
+    }
+
+    private String randomToken(List<String> tokens) {
+        return tokens.get(ThreadLocalRandom.current().nextInt(tokens.size()));
+    }
+
+    // ================= SETUP =================
+
+    private String signup(HttpClient client, String email) throws Exception {
+        HttpResponse<String> response = client.send(
+                post("/auth/signup", null, json(Map.of("name", email, "email", email, "password", PASSWORD))),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).as("signup " + email).isEqualTo(200);
+        return jsonMapper.readTree(response.body()).get("token").asString();
+    }
+
+    private String createAdmin(HttpClient client) throws Exception {
+        String email = "load-admin@example.com";
+        signup(client, email);
+
+        User admin = userRepository.findByEmail(email).orElseThrow();
+        admin.setRole("ADMIN");
+        userRepository.save(admin);
+
+        HttpResponse<String> response = client.send(post("/auth/login", null, credentials(email)),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).as("admin login").isEqualTo(200);
+        return jsonMapper.readTree(response.body()).get("token").asString();
+    }
+
+    private Map<String, Object> serverStats(HttpClient client, String adminToken) throws Exception {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (String name : List.of("circuit", "bulkhead", "cache", "coalescing", "writer", "password-hashing")) {
+            HttpResponse<String> response = client.send(get("/admin/" + name, adminToken),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                JsonNode body = jsonMapper.readTree(response.body());
+                stats.put(name, body);
+            }
+        }
+        return stats;
+    }
+
+    // ================= HELPERS =================
+
+    private HttpRequest get(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path)).timeout(Duration.ofSeconds(60)).GET();
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+
+    private HttpRequest post(String path, String token, String body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path))
+                .timeout(Duration.ofSeconds(120))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + port + path);
+    }
+
+    private String credentials(String email) {
+        return json(Map.of("email", email, "password", PASSWORD));
+    }
+
+    private String json(Object value) {
+        return jsonMapper.writeValueAsString(value);
+    }
+
+    private Path writeReport(Map<String, Object> report) throws IOException {
+        Path dir = Path.of(System.getProperty("load.output-dir", "target/load-test"));
+        Files.createDirectories(dir);
+
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path file = dir.resolve("load-" + stamp + ".json");
+        jsonMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        Files.copy(file, dir.resolve("latest.json"), StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            weights.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.aiapp.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of one endpoint during the measured part of a run.
+ *
+ * Latency is taken from the request's scheduled start, not from when it was
+ * actually sent, so a stalled client or server shows up in the percentiles
+ * instead of silently lowering the offered load.
+ */
+class EndpointStats {
+
+    private final String name;
+    private final long measureFromNanos;
+
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private long[] latencies = new long[1024];
+    private int count;
+
+    EndpointStats(String name, long measureFromNanos) {
+        this.name = name;
+        this.measureFromNanos = measureFromNanos;
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * Records one finished request; requests scheduled during warm-up are ignored.
+     *
+     * @param outcome the HTTP status, or a short label such as {@code exception}
+     */
+    void record(long scheduledNanos, long finishedNanos, String outcome) {
+        if (scheduledNanos < measureFromNanos) {
+            return;
+        }
+        outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+
+        synchronized (this) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = finishedNanos - scheduledNanos;
+        }
+    }
+
+    Map<String, Object> summary(double windowSeconds) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(latencies, count);
+        }
+        Arrays.sort(sorted);
+
+        Map<String, Long> byOutcome = new TreeMap<>();
+        outcomes.forEach((outcome, n) -> byOutcome.put(outcome, n.sum()));
+        long ok = byOutcome.entrySet().stream()
+                .filter(e -> e.getKey().startsWith("2"))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+
+        Map<String, Object> latencyMs = new LinkedHashMap<>();
+        latencyMs.put("mean", sorted.length == 0 ? 0 : millis((long) Arrays.stream(sorted).average().orElse(0)));
+        latencyMs.put("p50", millis(percentile(sorted, 0.50)));
+        latencyMs.put("p95", millis(percentile(sorted, 0.95)));
+        latencyMs.put("p99", millis(percentile(sorted, 0.99)));
+        latencyMs.put("max", millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", sorted.length);
+        summary.put("ok", ok);
+        summary.put("errorRate", sorted.length == 0 ? 0.0 : round(1.0 - (double) ok / sorted.length));
+        summary.put("throughputPerSec", round(ok / windowSeconds));
+        summary.put("outcomes", byOutcome);
+        summary.put("latencyMs", latencyMs);
+        return summary;
+    }
+
+    /**
+     * Nearest-rank percentile of an ascending array.
+     */
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
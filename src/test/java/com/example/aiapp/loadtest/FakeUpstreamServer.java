@@ -0,0 +1,168 @@
+package com.example.aiapp.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for an OpenAI-compatible {@code /v1/chat/completions}
+ * endpoint, so the app can be load-tested without spending Groq quota.
+ *
+ * Each call waits {@code latencyMs} plus up to {@code jitterMs} of uniform
+ * jitter, then fails with {@code errorStatus} with probability
+ * {@code errorRate}, or answers with a fixed completion. Requests with
+ * {@code "stream":true} get the answer as {@code chunks} SSE chunks spread
+ * over the same latency, with the usage block in the last one, as Groq does.
+ */
+class FakeUpstreamServer implements AutoCloseable {
+
+    private static final String ANSWER_WORD = "lorem ";
+
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final int errorStatus;
+    private final int chunks;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    FakeUpstreamServer(long latencyMs, long jitterMs, double errorRate, int errorStatus, int chunks)
+            throws IOException {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.chunks = Math.max(1, chunks);
+
+        // handlers mostly sleep, so one thread per in-flight call is fine
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fake-upstream");
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.createContext("/v1/chat/completions", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Reads the settings from {@code upstream.*} system properties.
+     */
+    static FakeUpstreamServer fromSystemProperties() throws IOException {
+        return new FakeUpstreamServer(
+                Long.getLong("upstream.latency-ms", 300),
+                Long.getLong("upstream.jitter-ms", 200),
+                Double.parseDouble(System.getProperty("upstream.error-rate", "0.02")),
+                Integer.getInteger("upstream.error-status", 500),
+                Integer.getInteger("upstream.stream-chunks", 20));
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    Map<String, Object> settings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("latencyMs", latencyMs);
+        settings.put("jitterMs", jitterMs);
+        settings.put("errorRate", errorRate);
+        settings.put("errorStatus", errorStatus);
+        settings.put("streamChunks", chunks);
+        return settings;
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("streams", streams.get());
+        stats.put("errors", errors.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        boolean stream = body.contains("\"stream\":true");
+        long delayMs = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+
+        try {
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                sleep(delayMs);
+                send(exchange, errorStatus, "application/json", "{\"error\":{\"message\":\"injected\"}}");
+            } else if (stream) {
+                streams.incrementAndGet();
+                stream(exchange, delayMs);
+            } else {
+                sleep(delayMs);
+                send(exchange, 200, "application/json", "{\"choices\":[{\"index\":0,\"message\":"
+                        + "{\"role\":\"assistant\",\"content\":\"" + ANSWER_WORD.repeat(chunks).trim() + "\"},"
+                        + "\"finish_reason\":\"stop\"}]," + usageJson() + "}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stream(HttpExchange exchange, long delayMs) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+
+        OutputStream out = exchange.getResponseBody();
+        long perChunk = delayMs / chunks;
+        for (int i = 0; i < chunks; i++) {
+            sleep(perChunk);
+            String chunk = "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + ANSWER_WORD + "\"}}]}";
+            out.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+        out.write(("data: {\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}],"
+                + "\"x_groq\":{" + usageJson() + "}}\n\ndata: [DONE]\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private String usageJson() {
+        return "\"usage\":{\"prompt_tokens\":50,\"completion_tokens\":" + chunks
+                + ",\"total_tokens\":" + (50 + chunks) + ",\"total_time\":" + latencyMs / 1000.0 + "}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.aiapp.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are started on a fixed schedule
+ * ({@code rate} per second) whether or not earlier ones have finished, and
+ * each one goes to an endpoint picked at random by weight.
+ */
+class LoadGenerator {
+
+    /**
+     * Starts one request scheduled at {@code scheduledNanos} and completes with
+     * its outcome (the HTTP status, or a short label).
+     */
+    @FunctionalInterface
+    interface Call {
+        CompletableFuture<String> start(long scheduledNanos);
+    }
+
+    private record Endpoint(EndpointStats stats, int weight, Call call) {
+    }
+
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final long startNanos;
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final List<EndpointStats> derived = new ArrayList<>();
+    private int totalWeight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long maxDispatchLagNanos;
+    private long dispatched;
+
+    LoadGenerator(double rate, long warmupSeconds, long durationSeconds, long startDelayMillis) {
+        this.rate = rate;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(startDelayMillis);
+    }
+
+    /**
+     * The first scheduled time that counts towards the results.
+     */
+    long measureFromNanos() {
+        return startNanos + warmupNanos;
+    }
+
+    LoadGenerator endpoint(EndpointStats stats, int weight, Call call) {
+        if (weight > 0) {
+            endpoints.add(new Endpoint(stats, weight, call));
+            totalWeight += weight;
+        }
+        return this;
+    }
+
+    /**
+     * Reports stats that calls record themselves, such as time to first token,
+     * next to the per-endpoint ones.
+     */
+    LoadGenerator derived(EndpointStats stats) {
+        derived.add(stats);
+        return this;
+    }
+
+    /**
+     * Drives the load until the end of the measurement window, then waits up
+     * to {@code drainTimeoutMs} for outstanding requests.
+     */
+    void run(long drainTimeoutMs) throws InterruptedException {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long endNanos = measureFromNanos() + durationNanos;
+
+        for (long i = 0; ; i++) {
+            long scheduled = startNanos + i * intervalNanos;
+            if (scheduled >= endNanos) {
+                break;
+            }
+
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            maxDispatchLagNanos = Math.max(maxDispatchLagNanos, -wait);
+
+            Endpoint endpoint = pick();
+            inFlight.incrementAndGet();
+            dispatched++;
+
+            CompletableFuture<String> result;
+            try {
+                result = endpoint.call().start(scheduled);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            result.whenComplete((outcome, error) -> {
+                endpoint.stats().record(scheduled, System.nanoTime(),
+                        error != null ? "exception" : outcome);
+                inFlight.decrementAndGet();
+            });
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    Map<String, Object> summary() {
+        double windowSeconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+        Map<String, Object> byEndpoint = new LinkedHashMap<>();
+        long ok = 0;
+        for (Endpoint endpoint : endpoints) {
+            Map<String, Object> stats = endpoint.stats().summary(windowSeconds);
+            byEndpoint.put(endpoint.stats().name(), stats);
+            ok += (long) stats.get("ok");
+        }
+        for (EndpointStats stats : derived) {
+            byEndpoint.put(stats.name(), stats.summary(windowSeconds));
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("offeredRatePerSec", rate);
+        summary.put("measuredSeconds", windowSeconds);
+        summary.put("dispatched", dispatched);
+        summary.put("unfinished", inFlight.get());
+        summary.put("maxDispatchLagMs", TimeUnit.NANOSECONDS.toMillis(maxDispatchLagNanos));
+        summary.put("throughputPerSec", Math.round(ok / windowSeconds * 100) / 100.0);
+        summary.put("endpoints", byEndpoint);
+        return summary;
+    }
+
+    private Endpoint pick() {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            r -= endpoint.weight();
+            if (r < 0) {
+                return endpoint;
+            }
+        }
+        return endpoints.get(endpoints.size() - 1);
+    }
+}
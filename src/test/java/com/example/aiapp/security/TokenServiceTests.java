@@ -0,0 +1,82 @@
+package com.example.aiapp.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.aiapp.entity.User;
+
+import tools.jackson.databind.json.JsonMapper;
+
+class TokenServiceTests {
+
+    private final TokenService tokenService = new TokenService(JsonMapper.builder().build(), "test-secret", 60);
+
+    @Test
+    void issuedTokenCarriesIdentityAndRole() {
+        String token = tokenService.issue(new User(7L, "Admin", "admin@example.com", "hash", "ADMIN"));
+
+        AuthenticatedUser user = tokenService.verify(token);
+
+        assertThat(user).isNotNull();
+        assertThat(user.id()).isEqualTo(7L);
+        assertThat(user.email()).isEqualTo("admin@example.com");
+        assertThat(user.isAdmin()).isTrue();
+    }
+
+    @Test
+    void rejectsTamperedForeignAndExpiredTokens() {
+        String token = tokenService.issue(new User(7L, "User", "user@example.com", "hash", "USER"));
+        String[] parts = token.split("\\.");
+        String forgedClaims = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "{\"sub\":\"7\",\"role\":\"ADMIN\",\"iat\":0,\"exp\":9999999999}".getBytes());
+
+        TokenService otherKey = new TokenService(JsonMapper.builder().build(), "other-secret", 60);
+        TokenService expired = new TokenService(JsonMapper.builder().build(), "test-secret", 0);
+
+        assertThat(tokenService.verify(parts[0] + "." + forgedClaims + "." + parts[2])).isNull();
+        assertThat(otherKey.verify(token)).isNull();
+        assertThat(tokenService.verify(expired.issue(new User(7L, "User", "user@example.com", "hash", "USER"))))
+                .isNull();
+        assertThat(tokenService.verify("not-a-token")).isNull();
+    }
+
+    @Test
+    void revocationRejectsTokensIssuedBeforeIt() {
+        TokenRevocationCache revocations = new TokenRevocationCache(60);
+        AuthenticatedUser user = tokenService.verify(
+                tokenService.issue(new User(7L, "User", "user@example.com", "hash", "USER")));
+
+        assertThat(revocations.isRevoked(user)).isFalse();
+        revocations.revoke(7L);
+        assertThat(revocations.isRevoked(user)).isTrue();
+    }
+
+    @Test
+    void tokenIssuedInTheSameSecondAfterARevocationIsAccepted() {
+        Instant revokedAt = Instant.parse("2026-01-01T12:00:00.400Z");
+        TokenRevocationCache revocations = new TokenRevocationCache(60, Clock.fixed(revokedAt, ZoneOffset.UTC));
+        revocations.revoke(7L);
+
+        assertThat(revocations.isRevoked(new AuthenticatedUser(7L, "user@example.com", "USER",
+                Instant.parse("2026-01-01T12:00:00.100Z")))).isTrue();
+        assertThat(revocations.isRevoked(new AuthenticatedUser(7L, "user@example.com", "USER",
+                Instant.parse("2026-01-01T12:00:00.700Z")))).isFalse();
+    }
+
+    @Test
+    void issuedAtKeepsMilliseconds() {
+        Instant before = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        AuthenticatedUser user = tokenService.verify(
+                tokenService.issue(new User(7L, "User", "user@example.com", "hash", "USER")));
+        Instant after = Instant.now();
+
+        assertThat(user.issuedAt()).isBetween(before, after);
+    }
+}
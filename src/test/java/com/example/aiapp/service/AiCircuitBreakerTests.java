@@ -0,0 +1,41 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.aiapp.exception.UpstreamUnavailableException;
+
+class AiCircuitBreakerTests {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    private final AiCircuitBreaker circuitBreaker = new AiCircuitBreaker(4, 2, 50, 30_000, now::get);
+
+    @Test
+    void errorInTheTrialCallLeavesTheCircuitRecoverable() {
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+                throw new ResourceAccessException("Read timed out");
+            })).isInstanceOf(ResourceAccessException.class);
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(AiCircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> circuitBreaker.execute(() -> "rejected"))
+                .isInstanceOf(UpstreamUnavailableException.class);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        assertThatThrownBy(() -> circuitBreaker.execute(() -> {
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+        assertThat(circuitBreaker.getState()).isEqualTo(AiCircuitBreaker.State.HALF_OPEN);
+
+        // the next call is the trial, and closes the circuit
+        assertThat(circuitBreaker.execute(() -> "ok")).isEqualTo("ok");
+        assertThat(circuitBreaker.getState()).isEqualTo(AiCircuitBreaker.State.CLOSED);
+    }
+}
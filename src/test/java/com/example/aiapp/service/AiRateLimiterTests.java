@@ -0,0 +1,94 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.aiapp.exception.RateLimitExceededException;
+import com.example.aiapp.service.AiRateLimiter.Limit;
+
+class AiRateLimiterTests {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    @Test
+    void allowsBurstThenRefillsAtTheConfiguredRate() {
+        AiRateLimiter limiter = new AiRateLimiter(true, new Limit(60, 3), new Limit(600, 30),
+                new Limit(6000, 1000), now::get);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(1L, "USER", 1);
+        }
+        assertThatThrownBy(() -> limiter.acquire(1L, "USER", 1))
+                .isInstanceOfSatisfying(RateLimitExceededException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(1));
+
+        // other users and admins have their own buckets
+        limiter.acquire(2L, "USER", 1);
+        for (int i = 0; i < 30; i++) {
+            limiter.acquire(3L, "ADMIN", 1);
+        }
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.acquire(1L, "USER", 1);
+        assertThatThrownBy(() -> limiter.acquire(1L, "USER", 1)).isInstanceOf(RateLimitExceededException.class);
+        assertThat(limiter.stats().get("rejectedByUser")).isEqualTo(2L);
+    }
+
+    @Test
+    void globalBucketCapsAllUsersAndDoesNotChargeRejectedCalls() {
+        AiRateLimiter limiter = new AiRateLimiter(true, new Limit(60, 2), new Limit(60, 2),
+                new Limit(60, 3), now::get);
+
+        limiter.acquire(1L, "USER", 1);
+        limiter.acquire(2L, "USER", 1);
+        limiter.acquire(3L, "USER", 1);
+        assertThatThrownBy(() -> limiter.acquire(1L, "USER", 1))
+                .isInstanceOfSatisfying(RateLimitExceededException.class,
+                        e -> assertThat(e.getMessage()).contains("capacity"));
+
+        // user 1 got its token back: after one global refill it still has one left
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.acquire(1L, "USER", 1);
+        assertThat(limiter.stats().get("rejectedByGlobal")).isEqualTo(1L);
+    }
+
+    @Test
+    void requestLargerThanABurstIsRefusedWithoutCharging() {
+        AiRateLimiter limiter = new AiRateLimiter(true, new Limit(60, 3), new Limit(60, 10),
+                new Limit(120, 5), now::get);
+
+        // more calls than the user's burst, or (for an admin) than the global one
+        assertThatThrownBy(() -> limiter.acquire(1L, "USER", 20))
+                .isNotInstanceOf(RateLimitExceededException.class)
+                .hasMessageContaining("split");
+        assertThatThrownBy(() -> limiter.acquire(2L, "ADMIN", 8))
+                .isNotInstanceOf(RateLimitExceededException.class)
+                .hasMessageContaining("split");
+
+        // nobody was charged for them
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(1L, "USER", 1);
+        }
+        limiter.acquire(2L, "ADMIN", 2);
+        assertThat(limiter.stats()).containsEntry("rejectedTooLarge", 2L).containsEntry("globalAvailable", 0L);
+    }
+
+    @Test
+    void idleBucketsAreEvictedOnceFull() {
+        AiRateLimiter limiter = new AiRateLimiter(true, new Limit(60, 5), new Limit(60, 5),
+                new Limit(6000, 1000), now::get);
+
+        limiter.acquire(1L, "USER", 2);
+        limiter.evictIdle();
+        assertThat(limiter.stats().get("trackedUsers")).isEqualTo(1);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        limiter.evictIdle();
+        assertThat(limiter.stats().get("trackedUsers")).isEqualTo(0);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.entity.CompressedTextConverter;
+import com.example.aiapp.exception.ServiceBusyException;
+import com.example.aiapp.repository.AiRequestRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Batching, overflow handling, retries and shutdown of the write-behind
+ * queue. The background thread commits on its own, so these tests run
+ * outside the test transaction.
+ */
+@DataJpaTest
+@Import(CompressedTextConverter.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AiRequestWriterTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private AiRequestRepository aiRequestRepository;
+
+    @Autowired
+    private CompressedTextConverter converter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // batch inserts to fail before the real one runs
+    private final AtomicInteger failuresToInject = new AtomicInteger();
+
+    private AiRequestWriter writer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.stop();
+        }
+        aiRequestRepository.deleteAll();
+    }
+
+    @Test
+    void flushesQueuedRequestsInBatches() throws InterruptedException {
+        writer = writer(100, 10, AiRequestWriter.OverflowPolicy.CALLER_RUNS);
+        writer.start();
+
+        for (int i = 0; i < 25; i++) {
+            writer.enqueue(request("EXPLAIN"));
+        }
+        awaitProcessed(25);
+
+        assertThat(writer.stats()).containsEntry("batches", 3L).containsEntry("callerRuns", 0L);
+        assertThat(aiRequestRepository.count()).isEqualTo(25);
+    }
+
+    @Test
+    void fullQueueWritesInlineWaitsOrRejectsPerPolicy() {
+        // not started, so the single slot stays taken
+        AiRequestWriter callerRuns = writer(1, 10, AiRequestWriter.OverflowPolicy.CALLER_RUNS);
+        callerRuns.enqueue(request("EXPLAIN"));
+        AiRequest inline = request("EXPLAIN");
+        callerRuns.enqueue(inline);
+        assertThat(inline.getId()).isNotNull();
+        assertThat(callerRuns.stats()).containsEntry("callerRuns", 1L).containsEntry("written", 1L);
+
+        AiRequestWriter blocking = writer(1, 10, AiRequestWriter.OverflowPolicy.BLOCK);
+        blocking.enqueue(request("EXPLAIN"));
+        long start = System.nanoTime();
+        blocking.enqueue(request("EXPLAIN"));
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(blocking.stats()).containsEntry("callerRuns", 1L).containsEntry("written", 1L);
+
+        AiRequestWriter rejecting = writer(1, 10, AiRequestWriter.OverflowPolicy.REJECT);
+        rejecting.enqueue(request("EXPLAIN"));
+        assertThatThrownBy(() -> rejecting.enqueue(request("EXPLAIN"))).isInstanceOf(ServiceBusyException.class);
+        assertThat(rejecting.stats()).containsEntry("rejected", 1L).containsEntry("written", 0L);
+    }
+
+    @Test
+    void retriesAFailedBatchThenIsolatesABadRow() throws InterruptedException {
+        writer = writer(100, 10, AiRequestWriter.OverflowPolicy.CALLER_RUNS);
+        writer.start();
+
+        // e.g. a database failover: the whole batch goes through on the third try
+        failuresToInject.set(2);
+        for (int i = 0; i < 3; i++) {
+            writer.enqueue(request("EXPLAIN"));
+        }
+        awaitProcessed(3);
+        assertThat(writer.stats()).containsEntry("retried", 2L).containsEntry("failed", 0L);
+
+        // a row the database refuses only loses itself
+        writer.enqueue(request("EXPLAIN"));
+        writer.enqueue(request(null));
+        writer.enqueue(request("SUMMARIZE"));
+        awaitProcessed(6);
+        assertThat(writer.stats()).containsEntry("failed", 1L);
+        assertThat(aiRequestRepository.count()).isEqualTo(5);
+    }
+
+    @Test
+    void stopWritesEverythingStillQueued() throws InterruptedException {
+        writer = writer(100, 1000, AiRequestWriter.OverflowPolicy.CALLER_RUNS);
+        writer.start();
+
+        for (int i = 0; i < 20; i++) {
+            writer.enqueue(request("EXPLAIN"));
+        }
+        writer.stop();
+        writer = null;
+
+        assertThat(aiRequestRepository.count()).isEqualTo(20);
+    }
+
+    private AiRequestWriter writer(int queueCapacity, int batchSize, AiRequestWriter.OverflowPolicy policy) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource) {
+            @Override
+            public int[] batchUpdate(PreparedStatementCreator psc, BatchPreparedStatementSetter pss,
+                    KeyHolder generatedKeyHolder) {
+                if (failuresToInject.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    throw new TransientDataAccessResourceException("Connection lost");
+                }
+                return super.batchUpdate(psc, pss, generatedKeyHolder);
+            }
+        };
+        StaticListableBeanFactory listeners = new StaticListableBeanFactory(Map.of());
+        return new AiRequestWriter(jdbcTemplate, aiRequestRepository,
+                listeners.getBeanProvider(AiRequestListener.class), converter, transactionManager,
+                queueCapacity, batchSize, 300, policy, 50, 3, 10, new SimpleMeterRegistry());
+    }
+
+    private void awaitProcessed(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (processed() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(processed()).isGreaterThanOrEqualTo(count);
+    }
+
+    private long processed() {
+        Map<String, Object> stats = writer.stats();
+        return (Long) stats.get("written") + (Long) stats.get("failed");
+    }
+
+    private static AiRequest request(String action) {
+        return new AiRequest(null, "input", action, "output", 1L, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.aiapp.client.GroqClient;
+import com.example.aiapp.dto.AiBatchResultDto;
+import com.example.aiapp.dto.AiRequestDto;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.exception.UpstreamUnavailableException;
+import com.example.aiapp.repository.AiRequestRepository;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Runs {@link GeminiService} against a local stub of the chat-completions
+ * API that fails on demand.
+ */
+class GeminiServiceResilienceTests {
+
+    private static final String OK_BODY =
+            "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"%s\"}}],"
+            + "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":34,\"total_tokens\":46,\"total_time\":0.05}}";
+
+    /** scripted status codes, one per request; 200 once exhausted */
+    private final Queue<Integer> faults = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private volatile String answer = "stub answer";
+
+    private HttpServer server;
+    private UpstreamPool upstreamPool;
+    private AiRequestWriter writer;
+    private AiCircuitBreaker circuitBreaker;
+    private GeminiService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            hits.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+
+            Integer status = faults.poll();
+            byte[] body = (status == null ? OK_BODY.formatted(answer) : "{\"error\":\"injected\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status == null ? 200 : status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        upstreamPool = new UpstreamPool(JsonMapper.builder().build(),
+                List.of(new UpstreamPool.Endpoint("stub",
+                        "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions",
+                        "test-key", "stub-model", 1)),
+                GroqClient.httpClient(10, 1000), 2000, 0.3, 500, 5000, 3, 30_000, 300_000, 10_000, 10_000, clock::get);
+
+        writer = mock(AiRequestWriter.class);
+        circuitBreaker = new AiCircuitBreaker(4, 4, 50, 30_000, clock::get);
+
+        service = newService(new ResponseCache(false, 10, 60));
+    }
+
+    private GeminiService newService(ResponseCache responseCache) {
+        GeminiService service = new GeminiService(mock(AiRequestRepository.class),
+                responseCache,
+                new RequestCoalescer(),
+                writer,
+                new AiBulkhead(4, 4, 1000),
+                circuitBreaker,
+                new AiRetryPolicy(3, 1, 5, 10_000),
+                upstreamPool,
+                new SimpleAsyncTaskExecutor("batch-test-"),
+                new LongInputSummarizer(new SimpleAsyncTaskExecutor("chunk-test-"), false, 6000, 3000, 4, 32, "SUMMARIZE"),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "batchMaxItems", 10);
+        ReflectionTestUtils.setField(service, "batchParallelism", 2);
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void retriesTransientFailuresAndPersistsOnlyTheSuccess() {
+        faults.add(503);
+        faults.add(429);
+
+        assertThat(service.process("hello", "EXPLAIN", 1L).get("output")).isEqualTo("stub answer");
+
+        assertThat(hits.get()).isEqualTo(3);
+
+        ArgumentCaptor<AiRequest> saved = ArgumentCaptor.forClass(AiRequest.class);
+        verify(writer, times(1)).enqueue(saved.capture());
+        assertThat(saved.getValue().getPromptTokens()).isEqualTo(12);
+        assertThat(saved.getValue().getCompletionTokens()).isEqualTo(34);
+        assertThat(saved.getValue().getUpstreamTimeMs()).isEqualTo(50);
+        assertThat(saved.getValue().getLatencyMs()).isNotNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchRecordsItemsWithoutAnActionAsExplain() {
+        List<AiBatchResultDto> results = service.processBatch(
+                List.of(new AiRequestDto("first", null), new AiRequestDto("second", "SUMMARIZE")), 1L, false);
+
+        assertThat(results).extracting(AiBatchResultDto::getOutput).containsExactly("stub answer", "stub answer");
+
+        ArgumentCaptor<List<AiRequest>> saved = ArgumentCaptor.forClass(List.class);
+        verify(writer, times(1)).writeBatch(saved.capture());
+        assertThat(saved.getValue()).extracting(AiRequest::getAction).containsExactly("EXPLAIN", "SUMMARIZE");
+    }
+
+    @Test
+    void bypassCacheCallsTheUpstreamAndRefreshesTheCachedOutput() {
+        service = newService(new ResponseCache(true, 10, 60));
+
+        assertThat(service.process("hello", "EXPLAIN", 1L).get("output")).isEqualTo("stub answer");
+        assertThat(service.process("hello", "EXPLAIN", 1L).get("output")).isEqualTo("stub answer");
+        assertThat(hits.get()).isEqualTo(1);
+
+        answer = "fresh answer";
+        assertThat(service.process("hello", "EXPLAIN", 1L, true).get("output")).isEqualTo("fresh answer");
+        assertThat(hits.get()).isEqualTo(2);
+
+        // the refreshed output is what later cached calls see
+        assertThat(service.process("hello", "EXPLAIN", 1L).get("output")).isEqualTo("fresh answer");
+        assertThat(hits.get()).isEqualTo(2);
+        verify(writer, times(4)).enqueue(any(AiRequest.class));
+    }
+
+    @Test
+    void doesNotRetryClientErrorsOrPersistFailures() {
+        faults.add(400);
+
+        assertThatThrownBy(() -> service.process("hello", "EXPLAIN", 1L))
+                .isInstanceOf(UpstreamUnavailableException.class);
+
+        assertThat(hits.get()).isEqualTo(1);
+        verify(writer, never()).enqueue(any(AiRequest.class));
+        assertThat(circuitBreaker.getState()).isEqualTo(AiCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensAfterRepeatedFailuresThenFailsFastAndRecovers() {
+        for (int i = 0; i < 12; i++) {
+            faults.add(500);
+        }
+
+        // 4 calls x 3 attempts each, all failing
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> service.process("hello", "EXPLAIN", 1L))
+                    .isInstanceOf(UpstreamUnavailableException.class);
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(AiCircuitBreaker.State.OPEN);
+        assertThat(hits.get()).isEqualTo(12);
+
+        // open: rejected without touching the upstream, with a retry hint
+        assertThatThrownBy(() -> service.process("hello", "EXPLAIN", 1L))
+                .isInstanceOfSatisfying(UpstreamUnavailableException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(30));
+        assertThat(hits.get()).isEqualTo(12);
+
+        // after the open period one trial call goes through and closes the circuit
+        clock.addAndGet(31_000_000_000L);
+        assertThat(service.process("hello", "EXPLAIN", 1L).get("output")).isEqualTo("stub answer");
+        assertThat(circuitBreaker.getState()).isEqualTo(AiCircuitBreaker.State.CLOSED);
+
+        verify(writer, times(1)).enqueue(any(AiRequest.class));
+    }
+}
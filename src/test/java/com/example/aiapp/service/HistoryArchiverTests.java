@@ -0,0 +1,193 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.aiapp.dto.AiRequestRef;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.entity.CompressedTextConverter;
+import com.example.aiapp.entity.User;
+import com.example.aiapp.repository.AiRequestRepository;
+import com.example.aiapp.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Expired rows are archived per user, role and default limit and deleted in
+ * batches; the archive can be read back and restored under the original ids.
+ */
+@DataJpaTest
+@Import(CompressedTextConverter.class)
+class HistoryArchiverTests {
+
+    private static final String LONG_OUTPUT = "Keyset pagination avoids deep OFFSET scans. ".repeat(40);
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private final List<Long> created = new ArrayList<>();
+    private final List<Long> deleted = new ArrayList<>();
+
+    @TempDir
+    private Path archiveDir;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AiRequestRepository aiRequestRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CompressedTextConverter converter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private AiRequestWriter writer;
+    private ArchiveStore store;
+
+    private Long admin;
+    private Long user;
+    private Long shortLived;
+
+    @BeforeEach
+    void setUp() {
+        AiRequestListener recorder = new AiRequestListener() {
+            @Override
+            public void onRequestsCreated(List<AiRequest> requests) {
+                requests.forEach(r -> created.add(r.getId()));
+            }
+
+            @Override
+            public void onRequestDeleted(AiRequestRef request) {
+                deleted.add(request.getId());
+            }
+        };
+        StaticListableBeanFactory listeners = new StaticListableBeanFactory(Map.of("recorder", recorder));
+        writer = new AiRequestWriter(jdbcTemplate, aiRequestRepository,
+                listeners.getBeanProvider(AiRequestListener.class), converter, transactionManager,
+                100, 100, 200, AiRequestWriter.OverflowPolicy.CALLER_RUNS, 50, 1, 0, new SimpleMeterRegistry());
+        store = new ArchiveStore(jsonMapper, archiveDir.toString());
+
+        admin = userRepository.save(new User(null, "Admin", "admin@example.com", "x", "ADMIN")).getId();
+        user = userRepository.save(new User(null, "User", "user@example.com", "x", "USER")).getId();
+        shortLived = userRepository.save(new User(null, "Short", "short@example.com", "x", "USER")).getId();
+    }
+
+    @Test
+    void archivesExpiredRowsPerUserRoleAndDefaultThenDeletesThem() throws IOException {
+        long adminOld = insert(admin, 400, "admin question");
+        long userOld1 = insert(user, 100, "old one");
+        long userOld2 = insert(user, 120, "old two");
+        long userOld3 = insert(user, 95, "old three");
+        long userRecent = insert(user, 50, "recent");
+        long shortOld = insert(shortLived, 10, "short lived");
+        long shortRecent = insert(shortLived, 1, "still here");
+        long orphanOld = insert(999L, 40, "deleted user");
+        long orphanRecent = insert(999L, 20, "deleted user, recent");
+
+        HistoryArchiver archiver = archiver("ADMIN:0,USER:90", shortLived + ":5", 2);
+        int batches = runAllRules(archiver);
+
+        // 1 for the short-lived user, 2 (of 2 rows max) for USER, 1 for the default
+        assertThat(batches).isEqualTo(4);
+        assertThat(remainingIds()).containsExactlyInAnyOrder(adminOld, userRecent, shortRecent, orphanRecent);
+        assertThat(deleted).containsExactlyInAnyOrder(userOld1, userOld2, userOld3, shortOld, orphanOld);
+        assertThat(store.files()).hasSize(4);
+        assertThat(archiver.stats().get("archived")).isEqualTo(5L);
+    }
+
+    @Test
+    void archiveIsQueryableAndRestoresUnderOriginalIds() throws IOException {
+        long first = insert(user, 100, "first");
+        long second = insert(user, 200, "second");
+        insert(admin, 100, "other user");
+
+        HistoryArchiver archiver = archiver("", "", 10);
+        runAllRules(archiver);
+        assertThat(remainingIds()).isEmpty();
+
+        // a batch archived again after a crash is only read once
+        store.write(List.of(new AiRequest(first, "first", "EXPLAIN", LONG_OUTPUT, user,
+                LocalDateTime.now().minusDays(100))));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiver.export(new HistoryExporter.Filter(user, null, null, null), true, out);
+        List<String> lines;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().filter(l -> !l.isBlank()).toList();
+        }
+        assertThat(lines).hasSize(2);
+        assertThat(jsonMapper.readTree(lines.get(0)).get("output").asString()).isEqualTo(LONG_OUTPUT);
+
+        LocalDate day = LocalDate.now().minusDays(200);
+        Map<String, Object> restored = archiver.restore(new HistoryExporter.Filter(user, null, day, day));
+        assertThat(restored).containsEntry("matched", 1L).containsEntry("restored", 1L);
+        assertThat(aiRequestRepository.findById(second)).get()
+                .satisfies(r -> {
+                    assertThat(r.getInputText()).isEqualTo("second");
+                    assertThat(r.getOutput()).isEqualTo(LONG_OUTPUT);
+                    assertThat(r.getPromptTokens()).isEqualTo(7);
+                });
+        assertThat(created).containsExactly(second);
+
+        // everything for the user, skipping the row already back
+        restored = archiver.restore(new HistoryExporter.Filter(user, null, null, null));
+        assertThat(restored).containsEntry("matched", 2L).containsEntry("restored", 1L);
+        assertThat(remainingIds()).containsExactlyInAnyOrder(first, second);
+    }
+
+    private HistoryArchiver archiver(String roleDays, String userDays, int batchSize) {
+        return new HistoryArchiver(jdbcTemplate, writer, store, false, 30, roleDays, userDays, batchSize, 0);
+    }
+
+    // what a background run does, on this thread and in the test transaction
+    private static int runAllRules(HistoryArchiver archiver) throws IOException {
+        int batches = 0;
+        for (HistoryArchiver.Rule rule : archiver.rules()) {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(rule.days());
+            long afterId = 0;
+            while ((afterId = archiver.archiveBatch(rule, cutoff, afterId)) >= 0) {
+                batches++;
+            }
+        }
+        return batches;
+    }
+
+    private long insert(Long userId, int daysAgo, String input) {
+        jdbcTemplate.update("INSERT INTO ai_requests (input_text, action, output, user_id, created_at, prompt_tokens)"
+                + " VALUES (?, 'EXPLAIN', ?, ?, ?, 7)",
+                converter.encode(input), converter.encode(LONG_OUTPUT), userId,
+                Timestamp.valueOf(LocalDateTime.now().minusDays(daysAgo)));
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM ai_requests", Long.class);
+    }
+
+    private List<Long> remainingIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM ai_requests", Long.class);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.aiapp.entity.CompressedTextConverter;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Exports stream the filtered rows with their text decoded, in either format,
+ * and stop cleanly when the client goes away.
+ */
+@DataJpaTest
+@Import(CompressedTextConverter.class)
+class HistoryExporterTests {
+
+    private static final String LONG_OUTPUT = "Bulkheads cap concurrent calls per dependency. ".repeat(40);
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CompressedTextConverter converter;
+
+    private HistoryExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        exporter = new HistoryExporter(jdbcTemplate, jsonMapper, new SimpleAsyncTaskExecutor("export-test-"), 2, 60_000);
+
+        insert(1L, "SUMMARIZE", "first", LONG_OUTPUT, LocalDate.of(2026, 1, 10), 12);
+        insert(1L, "EXPLAIN", "second, with \"quotes\"\nand a newline", "short", LocalDate.of(2026, 1, 20), null);
+        insert(1L, "SUMMARIZE", "third", "short", LocalDate.of(2026, 2, 5), 7);
+        insert(2L, "SUMMARIZE", "other user", "short", LocalDate.of(2026, 1, 15), 3);
+    }
+
+    @Test
+    void writesFilteredRowsAsNdjsonWithDecodedText() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(new HistoryExporter.Filter(1L, "SUMMARIZE", null, LocalDate.of(2026, 1, 31)),
+                HistoryExporter.Format.NDJSON, false, out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(1);
+
+        JsonNode row = jsonMapper.readTree(lines.get(0));
+        assertThat(row.get("userId").asLong()).isEqualTo(1L);
+        assertThat(row.get("input").asString()).isEqualTo("first");
+        assertThat(row.get("output").asString()).isEqualTo(LONG_OUTPUT);
+        assertThat(row.get("createdAt").asString()).isEqualTo("2026-01-10T12:00");
+        assertThat(row.get("promptTokens").asInt()).isEqualTo(12);
+        assertThat(row.get("latencyMs").isNull()).isTrue();
+
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        exporter.export(new HistoryExporter.Filter(null, null, null, null), HistoryExporter.Format.NDJSON, false, all);
+        assertThat(all.toString(StandardCharsets.UTF_8).lines()).hasSize(4);
+    }
+
+    @Test
+    void writesGzippedCsvWithQuotedFields() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(new HistoryExporter.Filter(1L, null, LocalDate.of(2026, 1, 15), LocalDate.of(2026, 1, 20)),
+                HistoryExporter.Format.CSV, true, out);
+
+        String csv;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        assertThat(csv).startsWith("id,userId,action,createdAt,input,output,"
+                + "promptTokens,completionTokens,upstreamTimeMs,latencyMs\r\n");
+        assertThat(csv).contains(",1,EXPLAIN,2026-01-20T12:00,\"second, with \"\"quotes\"\"\nand a newline\",short,,,,\r\n");
+        assertThat(csv.split("\r\n")).hasSize(2);
+    }
+
+    @Test
+    void stopsWhenTheClientGoesAway() {
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> exporter.export(new HistoryExporter.Filter(null, null, null, null),
+                HistoryExporter.Format.CSV, false, disconnected))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        assertThat(exporter.stats().get("failed")).isEqualTo(1L);
+    }
+
+    private void insert(Long userId, String action, String input, String output, LocalDate day, Integer promptTokens) {
+        jdbcTemplate.update("INSERT INTO ai_requests (input_text, action, output, user_id, created_at, prompt_tokens)"
+                + " VALUES (?, ?, ?, ?, ?, ?)",
+                converter.encode(input), action, converter.encode(output), userId,
+                Timestamp.valueOf(day.atTime(12, 0)), promptTokens);
+    }
+}
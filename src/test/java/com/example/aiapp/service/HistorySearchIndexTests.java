@@ -0,0 +1,144 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+
+import com.example.aiapp.dto.AiHistorySearchHitDto;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.entity.CompressedTextConverter;
+import com.example.aiapp.repository.AiRequestRepository;
+
+/**
+ * The per-user search index loads from the database (including compressed
+ * rows), follows creates and deletes incrementally, and stays fast on a large
+ * partition.
+ */
+@DataJpaTest
+@Import({CompressedTextConverter.class, HistorySearchIndex.class})
+class HistorySearchIndexTests {
+
+    private static final String LONG_OUTPUT = "A circuit breaker stops calls to a failing upstream for a while. "
+            .repeat(20) + "Half-open trial calls decide when to close it again.";
+
+    @Autowired
+    private AiRequestRepository aiRequestRepository;
+
+    @Autowired
+    private HistorySearchIndex index;
+
+    @BeforeEach
+    void dropPartitions() {
+        // the index outlives each test's rolled-back data
+        index.invalidate(null);
+    }
+
+    @Test
+    void loadsPartitionFromDatabaseAndRanksEntriesContainingEveryTerm() {
+        AiRequest compressed = save(1L, "What is a circuit breaker?", LONG_OUTPUT);
+        save(1L, "Explain retries", "Retry with backoff; a circuit breaker helps too.");
+        save(1L, "Explain a breaker panel", "The electrical panel in a house.");
+        save(2L, "circuit breaker for user two", "circuit breaker");
+
+        Page<AiHistorySearchHitDto> result = index.search(1L, "Circuit BREAKER", 0, 10);
+
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getContent()).extracting(AiHistorySearchHitDto::getId)
+                .startsWith(compressed.getId());
+        assertThat(result.getContent().get(0).getScore()).isGreaterThan(result.getContent().get(1).getScore());
+
+        // snippet around the first match deep in the (decompressed) output
+        String snippet = index.search(1L, "half-open", 0, 10).getContent().get(0).getOutputSnippet();
+        assertThat(snippet).startsWith("...").contains("Half-open trial calls").hasSizeLessThanOrEqualTo(206);
+
+        assertThat(index.search(1L, "the and of", 0, 10).getTotalElements()).isZero();
+        assertThat(index.search(1L, "circuit panel", 0, 10).getTotalElements()).isZero();
+    }
+
+    @Test
+    void followsCreatesAndDeletesOnceLoaded() {
+        save(1L, "kubernetes probes", "liveness and readiness");
+        assertThat(index.search(1L, "kubernetes", 0, 10).getTotalElements()).isEqualTo(1);
+
+        List<AiRequest> created = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            created.add(save(1L, "kubernetes question " + i, "answer " + i));
+        }
+        index.onRequestsCreated(created);
+
+        Page<AiHistorySearchHitDto> second = index.search(1L, "kubernetes", 1, 5);
+        assertThat(second.getTotalElements()).isEqualTo(8);
+        assertThat(second.getContent()).hasSize(3);
+
+        AiRequest deleted = created.get(3);
+        index.onRequestDeleted(aiRequestRepository.findRefById(deleted.getId()).orElseThrow());
+        aiRequestRepository.deleteById(deleted.getId());
+        assertThat(index.search(1L, "kubernetes", 0, 10).getTotalElements()).isEqualTo(7);
+
+        // a delete that bypassed the listener is picked up by a rebuild
+        aiRequestRepository.deleteById(created.get(4).getId());
+        aiRequestRepository.flush();
+        assertThat(index.stats().get("indexedDocuments")).isEqualTo(7L);
+        index.rebuild(1L);
+        assertThat(index.stats().get("indexedDocuments")).isEqualTo(6L);
+        assertThat(index.search(1L, "kubernetes", 0, 10).getTotalElements()).isEqualTo(6);
+    }
+
+    @Test
+    void largePartitionQueriesStayFast() {
+        // load the (empty) partition, then feed it 200k entries as the writer would
+        index.search(3L, "warmup", 0, 1);
+
+        Random random = new Random(42);
+        List<AiRequest> batch = new ArrayList<>();
+        for (long id = 1; id <= 200_000; id++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < 30; w++) {
+                // skewed vocabulary: a few very common terms, a long tail of rare ones
+                text.append("term").append((int) Math.pow(random.nextInt(1000), 2) / 10).append(' ');
+            }
+            batch.add(new AiRequest(1_000_000 + id, text.toString(), "EXPLAIN", "answer", 3L, LocalDateTime.now()));
+            if (batch.size() == 1000) {
+                index.onRequestsCreated(batch);
+                batch = new ArrayList<>();
+            }
+        }
+
+        long start = System.nanoTime();
+        Page<AiHistorySearchHitDto> common = index.search(3L, "term0 term10", 0, 20);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(common.getTotalElements()).isPositive();
+        assertThat(elapsedMs).isLessThan(1000);
+        assertThat(index.stats().get("indexedDocuments")).isEqualTo(200_000L);
+    }
+
+    @Test
+    void snippetCentersOnFirstMatchAtWordBoundary() {
+        String text = "lorem ipsum ".repeat(40) + "needle in the haystack " + "dolor sit ".repeat(40);
+
+        String snippet = HistorySearchIndex.snippet(text, Set.of("needle"), 80);
+
+        assertThat(snippet).startsWith("...").endsWith("...").contains("needle in the haystack");
+        // backed off to the start of a word
+        assertThat(snippet.substring(3)).startsWith("ipsum ");
+        assertThat(HistorySearchIndex.snippet("short", Set.of("x"), 80)).isEqualTo("short");
+    }
+
+    private AiRequest save(Long userId, String input, String output) {
+        return aiRequestRepository.saveAndFlush(
+                new AiRequest(null, input, "EXPLAIN", output, userId, LocalDateTime.now()));
+    }
+}
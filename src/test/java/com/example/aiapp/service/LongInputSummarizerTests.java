@@ -0,0 +1,130 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import com.example.aiapp.entity.AiRequest;
+
+/**
+ * Chunking and the parallel map-reduce of {@link LongInputSummarizer}, with
+ * the upstream replaced by functions that sleep.
+ */
+class LongInputSummarizerTests {
+
+    private static final int CHUNK_TOKENS = 100;
+    private static final int PARALLELISM = 4;
+    private static final long CALL_MS = 150;
+
+    private final LongInputSummarizer summarizer = new LongInputSummarizer(
+            new SimpleAsyncTaskExecutor("chunk-test-"), true, 200, CHUNK_TOKENS, PARALLELISM, 32, "SUMMARIZE,EXPLAIN");
+
+    @Test
+    void splitsOnParagraphsThenSentencesWithinTheBudget() {
+        String paragraph = "First sentence here. Second one follows! A third?";
+        String longSentence = "word ".repeat(300).trim();
+        String text = paragraph + "\n\n" + paragraph + "\n\n" + longSentence + ". Tail sentence.";
+
+        List<String> chunks = TextChunker.split(text, 20);
+
+        assertThat(chunks).allSatisfy(chunk -> assertThat(TextChunker.estimateTokens(chunk)).isLessThanOrEqualTo(20));
+        assertThat(chunks.get(0)).isEqualTo(paragraph);
+        assertThat(String.join(" ", chunks).replaceAll("\\s+", " "))
+                .isEqualTo(text.replaceAll("\\s+", " "));
+    }
+
+    @Test
+    void condensesPartsInParallelAndCombinesThemInOrder() {
+        String text = paragraphs(8, CHUNK_TOKENS * TextChunker.CHARS_PER_TOKEN - 10);
+        assertThat(summarizer.applies(text, "summarize")).isTrue();
+        assertThat(summarizer.applies(text, "REWRITE")).isFalse();
+        assertThat(summarizer.upstreamCalls(text, "SUMMARIZE")).isEqualTo(9);
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        AtomicReference<String> combinePrompt = new AtomicReference<>();
+        List<String> progress = new ArrayList<>();
+        Thread caller = Thread.currentThread();
+
+        long start = System.nanoTime();
+        Generation result = summarizer.summarize(text, "SUMMARIZE",
+                prompt -> {
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    sleep(CALL_MS);
+                    active.decrementAndGet();
+                    // "This is part k of n ..." -> "summary k"
+                    String part = prompt.substring("This is part ".length(), prompt.indexOf(" of "));
+                    return new Generation("summary " + part, 10, 5, 100, (int) CALL_MS);
+                },
+                prompt -> {
+                    combinePrompt.set(prompt);
+                    return new Generation("final", 40, 20, 100, 0);
+                },
+                (done, total) -> {
+                    assertThat(Thread.currentThread()).isSameAs(caller);
+                    progress.add(done + "/" + total);
+                });
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(result.output).isEqualTo("final");
+        assertThat(maxActive.get()).isEqualTo(PARALLELISM);
+        // 8 parts, 4 at a time: about two call durations, not eight
+        assertThat(elapsedMs).isLessThan(CALL_MS * 8 - 300);
+        assertThat(progress).containsExactly("1/8", "2/8", "3/8", "4/8", "5/8", "6/8", "7/8", "8/8");
+        assertThat(combinePrompt.get()).contains("Part 1:\nsummary 1\n\nPart 2:\nsummary 2");
+        assertThat(combinePrompt.get()).endsWith("Part 8:\nsummary 8");
+
+        AiRequest row = new AiRequest();
+        result.applyTo(row);
+        assertThat(row.getPromptTokens()).isEqualTo(8 * 10 + 40);
+        assertThat(row.getCompletionTokens()).isEqualTo(8 * 5 + 20);
+    }
+
+    @Test
+    void failedPartFailsTheWholeInput() {
+        String text = paragraphs(8, CHUNK_TOKENS * TextChunker.CHARS_PER_TOKEN - 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> summarizer.summarize(text, "EXPLAIN",
+                prompt -> {
+                    if (calls.incrementAndGet() == 2) {
+                        throw new IllegalStateException("upstream down");
+                    }
+                    sleep(CALL_MS);
+                    return new Generation("notes", null, null, null, null);
+                },
+                prompt -> new Generation("final", null, null, null, null),
+                null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("upstream down");
+
+        // no new parts are started once one has failed
+        assertThat(calls.get()).isLessThanOrEqualTo(PARALLELISM + 1);
+    }
+
+    private static String paragraphs(int count, int chars) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append("\n\n");
+            }
+            text.append(("Paragraph " + i + " sentence. ").repeat(chars / 22 + 1), 0, chars);
+        }
+        return text.toString();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
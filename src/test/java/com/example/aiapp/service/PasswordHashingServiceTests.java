@@ -0,0 +1,69 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.example.aiapp.exception.ServiceBusyException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PasswordHashingServiceTests {
+
+    // one thread, one queued task
+    private final PasswordHashingService service = new PasswordHashingService(
+            new BCryptPasswordEncoder(5), 1, 1, 10_000, new SimpleMeterRegistry());
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void rehashesHashesWithAnotherCost() throws InterruptedException {
+        String oldHash = new BCryptPasswordEncoder(4).encode("secret");
+        assertThat(service.needsRehash(oldHash)).isTrue();
+        assertThat(service.needsRehash(service.encode("secret"))).isFalse();
+        assertThat(service.needsRehash("{noop}secret")).isFalse();
+
+        LinkedBlockingQueue<String> stored = new LinkedBlockingQueue<>();
+        service.rehashAsync("secret", stored::add);
+
+        String newHash = stored.poll(10, TimeUnit.SECONDS);
+        assertThat(newHash).startsWith("$2a$05$");
+        assertThat(service.matches("secret", newHash)).isTrue();
+    }
+
+    @Test
+    void rejectsImmediatelyWhenThePoolIsFull() {
+        // the thread is busy and the queue full
+        service.rehashAsync("busy", hash -> awaitRelease());
+        service.rehashAsync("queued", hash -> awaitRelease());
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> service.encode("secret")).isInstanceOf(ServiceBusyException.class);
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+
+        // a rehash is just skipped; the next login tries again
+        service.rehashAsync("skipped", hash -> { });
+        assertThat(service.stats().get("rejected")).isEqualTo(2L);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTests {
+
+    private static final int WAITERS = 4;
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final ExecutorService executor = Executors.newFixedThreadPool(WAITERS + 1);
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void identicalCallsInFlightShareOneExecution() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        List<Future<String>> results = runConcurrently("key", () -> {
+            calls.incrementAndGet();
+            return "answer";
+        });
+
+        for (Future<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("answer");
+        }
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(coalescer.stats()).containsEntry("executed", 1L).containsEntry("coalesced", (long) WAITERS);
+
+        // once finished, the next call runs again, and other keys never share
+        assertThat(coalescer.execute("key", () -> "again")).isEqualTo("again");
+        assertThat(coalescer.execute("other", () -> "other")).isEqualTo("other");
+        assertThat(coalescer.stats()).containsEntry("executed", 3L).containsEntry("inFlight", 0);
+    }
+
+    @Test
+    void failureReachesEveryWaiter() throws Exception {
+        List<Future<String>> results = runConcurrently("key", () -> {
+            throw new IllegalStateException("upstream down");
+        });
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalStateException.class)
+                    .hasRootCauseMessage("upstream down");
+        }
+        assertThat(coalescer.inFlightCount()).isZero();
+    }
+
+    @Test
+    void errorReachesEveryWaiterInsteadOfHangingThem() throws Exception {
+        List<Future<String>> results = runConcurrently("key", () -> {
+            throw new StackOverflowError();
+        });
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        }
+        assertThat(coalescer.inFlightCount()).isZero();
+    }
+
+    /**
+     * Starts one call that blocks until the waiters have joined it, then
+     * {@value #WAITERS} more for the same key.
+     */
+    private List<Future<String>> runConcurrently(String key, Supplier<String> call) throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> coalescer.execute(key, () -> {
+            started.countDown();
+            await(release);
+            return call.get();
+        })));
+        started.await(10, TimeUnit.SECONDS);
+
+        for (int i = 0; i < WAITERS; i++) {
+            results.add(executor.submit(() -> coalescer.execute(key, () -> "not shared")));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((Long) coalescer.stats().get("coalesced") < WAITERS && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
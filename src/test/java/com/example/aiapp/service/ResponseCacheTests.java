@@ -0,0 +1,55 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class ResponseCacheTests {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryAtCapacity() {
+        ResponseCache cache = new ResponseCache(true, 2, 60, now::get);
+        cache.put("a", "output a");
+        cache.put("b", "output b");
+
+        // reading "a" makes "b" the least recently used
+        assertThat(cache.get("a")).isEqualTo("output a");
+        cache.put("c", "output c");
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo("output a");
+        assertThat(cache.get("c")).isEqualTo("output c");
+        assertThat(cache.stats()).containsEntry("size", 2).containsEntry("evictions", 1L);
+    }
+
+    @Test
+    void dropsEntriesOnceTheirTtlHasPassed() {
+        ResponseCache cache = new ResponseCache(true, 10, 60, now::get);
+        cache.put("a", "output a");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertThat(cache.get("a")).isEqualTo("output a");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.stats())
+                .containsEntry("size", 0)
+                .containsEntry("expirations", 1L)
+                .containsEntry("hits", 1L)
+                .containsEntry("misses", 1L);
+    }
+
+    @Test
+    void keyIgnoresWhitespaceDifferencesButNotActionOrModel() {
+        String key = ResponseCache.key("m", "explain", "  hello \n\t world ");
+
+        assertThat(ResponseCache.key("m", "EXPLAIN", "hello world")).isEqualTo(key);
+        assertThat(ResponseCache.key("m", "SUMMARIZE", "hello world")).isNotEqualTo(key);
+        assertThat(ResponseCache.key("other", "EXPLAIN", "hello world")).isNotEqualTo(key);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.aiapp.dto.AiHistorySummaryDto;
+import com.example.aiapp.entity.AiRequest;
+import com.example.aiapp.entity.CompressedTextConverter;
+import com.example.aiapp.repository.AiRequestRepository;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Rows written before compression existed are re-encoded by the migration and
+ * still read back unchanged through JPA, the summary previews and the admin
+ * listing.
+ */
+@DataJpaTest(properties = "ai.compression.migration.batch-size=2")
+@Import({CompressedTextConverter.class, TextCompressionMigration.class})
+class TextCompressionMigrationTests {
+
+    private static final String LONG_OUTPUT = "Retries with jittered exponential backoff spread load over time. "
+            .repeat(30);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AiRequestRepository aiRequestRepository;
+
+    @Autowired
+    private TextCompressionMigration migration;
+
+    @Test
+    void reencodesLegacyRowsInBatchesAndKeepsThemReadable() {
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.update("INSERT INTO ai_requests (input_text, action, output, user_id, created_at)"
+                    + " VALUES (?, 'SUMMARIZE', ?, 1, ?)",
+                    "question " + i, LONG_OUTPUT + i, Timestamp.valueOf(LocalDateTime.now().minusMinutes(i)));
+        }
+
+        long afterId = 0;
+        int batches = 0;
+        while ((afterId = migration.migrateBatch(afterId)) >= 0) {
+            batches++;
+        }
+        assertThat(batches).isEqualTo(3);
+        assertThat(migration.stats().get("rewritten")).isEqualTo(5L);
+        assertThat((long) migration.stats().get("charsSaved")).isPositive();
+
+        // stored compressed, short inputs untouched
+        String rawOutput = jdbcTemplate.queryForObject("SELECT output FROM ai_requests ORDER BY id LIMIT 1", String.class);
+        String rawInput = jdbcTemplate.queryForObject("SELECT input_text FROM ai_requests ORDER BY id LIMIT 1",
+                String.class);
+        assertThat(CompressedTextConverter.isCompressed(rawOutput)).isTrue();
+        assertThat(rawOutput.length()).isLessThan(LONG_OUTPUT.length() / 4);
+        assertThat(rawInput).isEqualTo("question 0");
+
+        // a second run finds nothing left to do
+        assertThat(migration.migrateBatch(0)).isPositive();
+        assertThat(migration.stats().get("rewritten")).isEqualTo(5L);
+
+        entityManager.clear();
+        AiRequest newest = aiRequestRepository.findAllByUserIdOrderByCreatedAtDesc(1L, PageRequest.of(0, 1))
+                .getContent().get(0);
+        assertThat(newest.getOutput()).isEqualTo(LONG_OUTPUT + 0);
+
+        AiHistorySummaryDto summary = aiRequestRepository.findSummariesByUserId(1L, PageRequest.of(0, 1))
+                .getContent().get(0);
+        assertThat(summary.getInputPreview()).isEqualTo("question 0");
+        assertThat(summary.getOutputPreview()).isEqualTo(LONG_OUTPUT.substring(0, AiHistorySummaryDto.PREVIEW_LENGTH));
+
+        assertThat(aiRequestRepository.findAllWithUserEmail(PageRequest.of(0, 1)).getContent().get(0).getOutput())
+                .isEqualTo(LONG_OUTPUT + 0);
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.aiapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.aiapp.client.ChatCompletionRequest;
+import com.example.aiapp.client.GroqClient;
+import com.sun.net.httpserver.HttpServer;
+
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Routes calls over several local stubs of the chat-completions API that
+ * differ in latency, quota and health.
+ */
+class UpstreamPoolTests {
+
+    private static final String OK_BODY =
+            "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"%s\"}}]}";
+
+    private final List<Stub> stubs = new ArrayList<>();
+
+    // real time, plus whatever the test skips ahead
+    private final AtomicLong skipped = new AtomicLong();
+
+    @AfterEach
+    void tearDown() {
+        stubs.forEach(stub -> stub.server.stop(0));
+    }
+
+    @Test
+    void sendsMostCallsToTheFastestMemberAndSpreadsConcurrentOnes() throws Exception {
+        // so that class loading does not count against whichever member goes first
+        Stub warmup = stub("warmup", 0);
+        call(pool(5000, endpoint(warmup, 1)));
+
+        Stub fast = stub("fast", 5);
+        Stub slow = stub("slow", 40);
+        UpstreamPool pool = pool(5000, endpoint(fast, 1), endpoint(slow, 1));
+
+        // each member is tried once, then the faster one gets everything
+        for (int i = 0; i < 30; i++) {
+            call(pool);
+        }
+        assertThat(slow.hits.get()).isEqualTo(1);
+        assertThat(ewmaMs(pool, "fast")).isLessThan(ewmaMs(pool, "slow"));
+
+        // an estimate that has gone stale is measured again
+        skipped.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        call(pool);
+        call(pool);
+        assertThat(slow.hits.get()).isEqualTo(2);
+
+        // under concurrency the calls in flight push the overflow to the slow member
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> call(pool)));
+            }
+            for (Future<String> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(slow.hits.get()).isGreaterThan(1);
+        assertThat(fast.hits.get()).isGreaterThan(slow.hits.get());
+    }
+
+    @Test
+    void skipsMembersOutOfQuotaUntilTheirReset() {
+        Stub drained = stub("drained", 5);
+        drained.headers.put("x-ratelimit-limit-requests", "100");
+        drained.headers.put("x-ratelimit-remaining-requests", "0");
+        drained.headers.put("x-ratelimit-reset-requests", "1m30s");
+        Stub throttled = stub("throttled", 5);
+        throttled.statuses.add(429);
+        throttled.headers.put("Retry-After", "20");
+        Stub spare = stub("spare", 60);
+        UpstreamPool pool = pool(5000, endpoint(drained, 10), endpoint(throttled, 10), endpoint(spare, 1));
+
+        // one call each, as none has been measured; two of them use up their quota
+        for (int i = 0; i < 3; i++) {
+            try {
+                call(pool);
+            } catch (HttpClientErrorException.TooManyRequests expected) {
+                // throttled
+            }
+        }
+        assertThat(List.of(drained.hits.get(), throttled.hits.get(), spare.hits.get())).containsOnly(1);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(call(pool)).isEqualTo("spare");
+        }
+
+        // the 429's Retry-After has passed, the drained quota has not been reset yet;
+        // both other members are due a probe, and the throttled one, never measured
+        // (a 429 says nothing about latency), goes before the stale spare
+        skipped.addAndGet(TimeUnit.SECONDS.toNanos(21));
+        assertThat(member(pool, "throttled").get("available")).isEqualTo(true);
+        assertThat(call(pool)).isEqualTo("throttled");
+        assertThat(call(pool)).isEqualTo("spare");
+        assertThat(drained.hits.get()).isEqualTo(1);
+
+        skipped.addAndGet(TimeUnit.SECONDS.toNanos(70));
+        drained.headers.put("x-ratelimit-remaining-requests", "99");
+        throttled.statuses.add(429);
+        assertThat(member(pool, "drained").get("available")).isEqualTo(true);
+        for (int i = 0; i < 3; i++) {
+            try {
+                call(pool);
+            } catch (HttpClientErrorException.TooManyRequests expected) {
+                // throttled again
+            }
+        }
+        assertThat(drained.hits.get()).isGreaterThan(1);
+    }
+
+    @Test
+    void ejectsMemberAfterFailuresInARowAndReadmitsItOnProbation() {
+        // no failure penalty and no re-probing, so only the ejection keeps the
+        // (faster) flaky member out
+        UpstreamPool pool = pool(0, 600_000, lambdaEndpoint("flaky"), lambdaEndpoint("steady"));
+        boolean[] flakyHealthy = {true};
+        AtomicInteger flakyCalls = new AtomicInteger();
+        Function<UpstreamPool.Member, String> call = member -> {
+            if (member.name().equals("steady")) {
+                skipped.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+                return "steady";
+            }
+            flakyCalls.incrementAndGet();
+            skipped.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+            if (!flakyHealthy[0]) {
+                throw HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "Bad Gateway", null, null, null);
+            }
+            return "flaky";
+        };
+
+        pool.execute(call);
+        pool.execute(call);
+        assertThat(flakyCalls.get()).isEqualTo(1);
+
+        flakyHealthy[0] = false;
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> pool.execute(call)).isInstanceOf(HttpServerErrorException.class);
+        }
+        assertThat(flakyCalls.get()).isEqualTo(4);
+        assertThat(member(pool, "flaky").get("available")).isEqualTo(false);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(pool.execute(call)).isEqualTo("steady");
+        }
+        assertThat(flakyCalls.get()).isEqualTo(4);
+
+        // back after 30 s; one more failure ejects it again, for twice as long
+        skipped.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        assertThatThrownBy(() -> pool.execute(call)).isInstanceOf(HttpServerErrorException.class);
+        assertThat((Long) member(pool, "flaky").get("ejectedForMs")).isBetween(59_000L, 60_000L);
+
+        skipped.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        flakyHealthy[0] = true;
+        assertThat(pool.execute(call)).isEqualTo("flaky");
+        assertThat(member(pool, "flaky").get("available")).isEqualTo(true);
+    }
+
+    @Test
+    void failurePenaltyMovesTrafficBeforeAnyEjection() {
+        UpstreamPool pool = pool(5000, lambdaEndpoint("flaky"), lambdaEndpoint("steady"));
+        boolean[] flakyHealthy = {true};
+        Function<UpstreamPool.Member, String> call = member -> {
+            skipped.addAndGet(TimeUnit.MILLISECONDS.toNanos(member.name().equals("flaky") ? 1 : 10));
+            if (member.name().equals("flaky") && !flakyHealthy[0]) {
+                throw new ResourceAccessException("Read timed out");
+            }
+            return member.name();
+        };
+
+        pool.execute(call);
+        pool.execute(call);
+        assertThat(pool.execute(call)).isEqualTo("flaky");
+
+        flakyHealthy[0] = false;
+        assertThatThrownBy(() -> pool.execute(call)).isInstanceOf(ResourceAccessException.class);
+        assertThat(pool.execute(call)).isEqualTo("steady");
+        assertThat(member(pool, "flaky").get("available")).isEqualTo(true);
+    }
+
+    @Test
+    void errorInACallDoesNotLeaveTheMemberBusy() {
+        UpstreamPool pool = pool(5000, lambdaEndpoint("only"));
+
+        assertThatThrownBy(() -> pool.execute(member -> {
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+
+        assertThat(member(pool, "only").get("inFlight")).isEqualTo(0);
+    }
+
+    @Test
+    void usesEjectedMembersWhenNoneAreLeft() {
+        Stub only = stub("only", 0);
+        for (int i = 0; i < 4; i++) {
+            only.statuses.add(500);
+        }
+        UpstreamPool pool = pool(5000, endpoint(only, 1));
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> call(pool)).isInstanceOf(HttpServerErrorException.class);
+        }
+        assertThat(member(pool, "only").get("available")).isEqualTo(false);
+        assertThat(call(pool)).isEqualTo("only");
+        assertThat(only.hits.get()).isEqualTo(5);
+    }
+
+    @Test
+    void parsesRateLimitResetDurations() {
+        assertThat(UpstreamPool.parseDurationNanos("7.66s")).isEqualTo(7_660_000_000L);
+        assertThat(UpstreamPool.parseDurationNanos("2m59.56s")).isEqualTo(179_560_000_000L);
+        assertThat(UpstreamPool.parseDurationNanos("1h2m")).isEqualTo(3_720_000_000_000L);
+        assertThat(UpstreamPool.parseDurationNanos("120ms")).isEqualTo(120_000_000L);
+        assertThat(UpstreamPool.parseDurationNanos("soon")).isEqualTo(-1);
+        assertThat(UpstreamPool.parseDurationNanos(null)).isEqualTo(-1);
+    }
+
+    // ================= HELPERS =================
+
+    private static String call(UpstreamPool pool) {
+        return pool.execute(member -> member.client().complete(ChatCompletionRequest.of(member.model(), "hi")))
+                .content();
+    }
+
+    private UpstreamPool pool(long failurePenaltyMs, UpstreamPool.Endpoint... endpoints) {
+        return pool(failurePenaltyMs, 10_000, endpoints);
+    }
+
+    private UpstreamPool pool(long failurePenaltyMs, long probeIntervalMs, UpstreamPool.Endpoint... endpoints) {
+        return new UpstreamPool(JsonMapper.builder().build(), List.of(endpoints), GroqClient.httpClient(32, 1000),
+                5000, 0.3, 500, failurePenaltyMs, 3, 30_000, 300_000, 10_000, probeIntervalMs,
+                () -> System.nanoTime() + skipped.get());
+    }
+
+    // for calls that never reach the client
+    private static UpstreamPool.Endpoint lambdaEndpoint(String name) {
+        return new UpstreamPool.Endpoint(name, "http://127.0.0.1:9/v1/chat/completions", "key", "model", 1);
+    }
+
+    private static UpstreamPool.Endpoint endpoint(Stub stub, int weight) {
+        return new UpstreamPool.Endpoint(stub.name,
+                "http://127.0.0.1:" + stub.server.getAddress().getPort() + "/v1/chat/completions",
+                "key-" + stub.name, "model-" + stub.name, weight);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> member(UpstreamPool pool, String name) {
+        return ((List<Map<String, Object>>) pool.stats().get("members")).stream()
+                .filter(m -> m.get("name").equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static long ewmaMs(UpstreamPool pool, String name) {
+        return (Long) member(pool, name).get("ewmaMs");
+    }
+
+    /** answers with its own name after {@code delayMs}, or with the next scripted status */
+    private Stub stub(String name, long delayMs) {
+        try {
+            Stub stub = new Stub(name, HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64));
+            stub.server.createContext("/v1/chat/completions", exchange -> {
+                stub.hits.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                Integer status = stub.statuses.poll();
+                byte[] body = (status == null ? OK_BODY.formatted(name) : "{\"error\":\"injected\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                stub.headers.forEach((header, value) -> exchange.getResponseHeaders().add(header, value));
+                exchange.sendResponseHeaders(status == null ? 200 : status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            stub.server.setExecutor(Executors.newCachedThreadPool());
+            stub.server.start();
+            stubs.add(stub);
+            return stub;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Stub(String name, HttpServer server, AtomicInteger hits, Queue<Integer> statuses,
+            Map<String, String> headers) {
+        Stub(String name, HttpServer server) {
+            this(name, server, new AtomicInteger(), new ConcurrentLinkedQueue<>(),
+                    new ConcurrentHashMap<>());
+        }
+    }
+}